@@ -0,0 +1,71 @@
+/*******************************************************************************
+ * Copyright (c) 2022-2026 Maxprograms. All rights reserved.
+ *
+ * This software is the proprietary property of Maxprograms.
+ * Use, modification, and distribution are subject to the terms of the 
+ * Software License Agreement found in the root of this distribution 
+ *
+ * Unauthorized redistribution or commercial use is strictly prohibited.
+ *******************************************************************************/
+package com.maxprograms.xml.benchmarks;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+import com.maxprograms.xml.Catalog;
+import com.maxprograms.xml.CatalogBuilder;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CatalogBenchmark {
+
+	private Catalog catalog;
+
+	@Setup
+	public void setup() throws Exception {
+		catalog = CatalogBuilder.getCatalog(Corpus.getCatalog().getAbsolutePath());
+	}
+
+	@Benchmark
+	public boolean resolvePublic() throws SAXException, IOException {
+		return resolve(Corpus.TOPIC_PUBLIC_ID, Corpus.TOPIC_SYSTEM_ID);
+	}
+
+	@Benchmark
+	public boolean resolveSystem() throws SAXException, IOException {
+		return resolve(null, Corpus.TOPIC_SYSTEM_ID);
+	}
+
+	@Benchmark
+	public boolean resolveUnknown() throws SAXException, IOException {
+		return resolve("-//UNKNOWN//DTD Nothing//EN", "http://example.com/nothing.dtd");
+	}
+
+	private boolean resolve(String publicId, String systemId) throws SAXException, IOException {
+		InputSource source = catalog.resolveEntity(publicId, systemId);
+		if (source == null) {
+			return false;
+		}
+		try (InputStream stream = source.getByteStream()) {
+			return stream != null;
+		}
+	}
+}
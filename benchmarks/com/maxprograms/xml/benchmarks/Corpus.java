@@ -0,0 +1,210 @@
+/*******************************************************************************
+ * Copyright (c) 2022-2026 Maxprograms. All rights reserved.
+ *
+ * This software is the proprietary property of Maxprograms.
+ * Use, modification, and distribution are subject to the terms of the 
+ * Software License Agreement found in the root of this distribution 
+ *
+ * Unauthorized redistribution or commercial use is strictly prohibited.
+ *******************************************************************************/
+package com.maxprograms.xml.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+public class Corpus {
+
+	public static final String XLIFF = "xliff";
+	public static final String TMX = "tmx";
+	public static final String DITA = "dita";
+
+	public static final String SMALL = "small";
+	public static final String MEDIUM = "medium";
+	public static final String LARGE = "large";
+
+	public static final String TOPIC_PUBLIC_ID = "-//MAXPROGRAMS//DTD Benchmark Topic//EN";
+	public static final String TOPIC_SYSTEM_ID = "topic.dtd";
+	public static final int ENTITIES = 200;
+
+	private static final String[] WORDS = { "the", "translation", "memory", "contains", "segments", "with",
+			"inline", "markup", "and", "plain", "text", "that", "must", "be", "parsed", "quickly", "by", "our",
+			"servers", "every", "minute", "of", "day", "XML", "document", "element", "attribute", "value" };
+
+	private static Path folder;
+
+	private Corpus() {
+		// do not instantiate
+	}
+
+	public static synchronized File getFile(String format, String size) throws IOException {
+		Path path = getFolder().resolve(size + '.' + format);
+		if (!Files.exists(path)) {
+			int units = units(size);
+			switch (format) {
+				case XLIFF:
+					writeXliff(path, units);
+					break;
+				case TMX:
+					writeTmx(path, units);
+					break;
+				case DITA:
+					writeDita(path, units);
+					break;
+				default:
+					throw new IllegalArgumentException("Unknown format: " + format);
+			}
+		}
+		return path.toFile();
+	}
+
+	public static synchronized File getCatalog() throws IOException {
+		Path path = getFolder().resolve("catalog.xml");
+		if (!Files.exists(path)) {
+			try (Writer writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+				writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+				writer.write("<catalog xmlns=\"urn:oasis:names:tc:entity:xmlns:xml:catalog\" prefer=\"public\">\n");
+				writer.write("  <public publicId=\"" + TOPIC_PUBLIC_ID + "\" uri=\"" + TOPIC_SYSTEM_ID + "\"/>\n");
+				writer.write("  <system systemId=\"" + TOPIC_SYSTEM_ID + "\" uri=\"" + TOPIC_SYSTEM_ID + "\"/>\n");
+				writer.write("</catalog>\n");
+			}
+		}
+		getDTD();
+		return path.toFile();
+	}
+
+	public static synchronized File getDTD() throws IOException {
+		Path path = getFolder().resolve(TOPIC_SYSTEM_ID);
+		if (!Files.exists(path)) {
+			Path module = getFolder().resolve("topic.mod");
+			try (Writer writer = Files.newBufferedWriter(module, StandardCharsets.UTF_8)) {
+				writer.write("<!ELEMENT topic (title, body)>\n");
+				writer.write("<!ATTLIST topic id ID #REQUIRED xml:lang CDATA #IMPLIED>\n");
+				writer.write("<!ELEMENT title (#PCDATA | b | i | ph)*>\n");
+				writer.write("<!ELEMENT body (p | ul | section)*>\n");
+				writer.write("<!ELEMENT section (title, (p | ul)*)>\n");
+				writer.write("<!ATTLIST section id ID #IMPLIED>\n");
+				writer.write("<!ELEMENT p (#PCDATA | b | i | ph)*>\n");
+				writer.write("<!ATTLIST p id ID #IMPLIED audience CDATA #IMPLIED translate (yes | no) \"yes\">\n");
+				writer.write("<!ELEMENT ul (li)+>\n");
+				writer.write("<!ELEMENT li (#PCDATA | b | i | ph)*>\n");
+				writer.write("<!ELEMENT b (#PCDATA | i | ph)*>\n");
+				writer.write("<!ELEMENT i (#PCDATA | b | ph)*>\n");
+				writer.write("<!ELEMENT ph (#PCDATA)>\n");
+				writer.write("<!ATTLIST ph keyref CDATA #IMPLIED>\n");
+			}
+			try (Writer writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+				writer.write("<!ENTITY % topic-mod SYSTEM \"topic.mod\">\n%topic-mod;\n");
+				for (int i = 0; i < ENTITIES; i++) {
+					writer.write("<!ENTITY prod" + i + " \"Product Name " + i + " Enterprise\">\n");
+				}
+			}
+		}
+		return path.toFile();
+	}
+
+	private static Path getFolder() throws IOException {
+		if (folder == null) {
+			folder = Files.createTempDirectory("xmljava-jmh");
+			folder.toFile().deleteOnExit();
+		}
+		return folder;
+	}
+
+	private static int units(String size) {
+		switch (size) {
+			case SMALL:
+				return 10;
+			case MEDIUM:
+				return 1_000;
+			case LARGE:
+				return 50_000;
+			default:
+				throw new IllegalArgumentException("Unknown size: " + size);
+		}
+	}
+
+	private static String sentence(Random random, int words) {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < words; i++) {
+			if (i > 0) {
+				sb.append(' ');
+			}
+			sb.append(WORDS[random.nextInt(WORDS.length)]);
+		}
+		return sb.toString();
+	}
+
+	private static void writeXliff(Path path, int units) throws IOException {
+		Random random = new Random(units);
+		try (Writer writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+			writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+			writer.write("<xliff xmlns=\"urn:oasis:names:tc:xliff:document:2.0\" version=\"2.0\""
+					+ " srcLang=\"en\" trgLang=\"es\">\n");
+			writer.write("  <file id=\"f1\" original=\"benchmark.properties\">\n");
+			for (int i = 0; i < units; i++) {
+				writer.write("    <unit id=\"" + i + "\">\n");
+				writer.write("      <segment state=\"" + (i % 3 == 0 ? "final" : "initial") + "\">\n");
+				writer.write("        <source>" + sentence(random, 6) + " <pc id=\"1\">" + sentence(random, 2)
+						+ "</pc> " + sentence(random, 4) + " &amp; " + sentence(random, 3) + "</source>\n");
+				writer.write("        <target>" + sentence(random, 7) + " <pc id=\"1\">" + sentence(random, 2)
+						+ "</pc> " + sentence(random, 5) + "</target>\n");
+				writer.write("      </segment>\n");
+				writer.write("    </unit>\n");
+			}
+			writer.write("  </file>\n");
+			writer.write("</xliff>\n");
+		}
+	}
+
+	private static void writeTmx(Path path, int units) throws IOException {
+		Random random = new Random(units);
+		try (Writer writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+			writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+			writer.write("<tmx version=\"1.4\">\n");
+			writer.write("  <header creationtool=\"XMLJava\" creationtoolversion=\"1.0\" datatype=\"xml\""
+					+ " segtype=\"sentence\" adminlang=\"en\" srclang=\"en\" o-tmf=\"xml\"/>\n");
+			writer.write("  <body>\n");
+			for (int i = 0; i < units; i++) {
+				writer.write("    <tu tuid=\"" + i + "\" creationdate=\"20260101T120000Z\">\n");
+				writer.write("      <prop type=\"project\">benchmark</prop>\n");
+				writer.write("      <tuv xml:lang=\"en\"><seg>" + sentence(random, 8) + " <bpt i=\"1\">&lt;b&gt;</bpt>"
+						+ sentence(random, 2) + "<ept i=\"1\">&lt;/b&gt;</ept></seg></tuv>\n");
+				writer.write("      <tuv xml:lang=\"es\"><seg>" + sentence(random, 9) + "</seg></tuv>\n");
+				writer.write("    </tu>\n");
+			}
+			writer.write("  </body>\n");
+			writer.write("</tmx>\n");
+		}
+	}
+
+	private static void writeDita(Path path, int units) throws IOException {
+		getDTD();
+		Random random = new Random(units);
+		try (Writer writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+			writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+			writer.write("<!DOCTYPE topic PUBLIC \"" + TOPIC_PUBLIC_ID + "\" \"" + TOPIC_SYSTEM_ID + "\">\n");
+			writer.write("<topic id=\"benchmark\" xml:lang=\"en\">\n");
+			writer.write("  <title>Benchmark &prod0; topic</title>\n");
+			writer.write("  <body>\n");
+			for (int i = 0; i < units; i++) {
+				if (i % 10 == 0) {
+					writer.write("    <ul>\n");
+					for (int j = 0; j < 3; j++) {
+						writer.write("      <li>" + sentence(random, 5) + " <b>" + sentence(random, 2) + "</b></li>\n");
+					}
+					writer.write("    </ul>\n");
+				}
+				writer.write("    <p id=\"p" + i + "\">" + sentence(random, 6) + " &prod" + random.nextInt(ENTITIES)
+						+ "; " + sentence(random, 4) + " <ph keyref=\"k" + i + "\">" + sentence(random, 1) + "</ph> "
+						+ sentence(random, 5) + "</p>\n");
+			}
+			writer.write("  </body>\n");
+			writer.write("</topic>\n");
+		}
+	}
+}
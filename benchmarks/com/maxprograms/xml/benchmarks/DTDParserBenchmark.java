@@ -0,0 +1,50 @@
+/*******************************************************************************
+ * Copyright (c) 2022-2026 Maxprograms. All rights reserved.
+ *
+ * This software is the proprietary property of Maxprograms.
+ * Use, modification, and distribution are subject to the terms of the 
+ * Software License Agreement found in the root of this distribution 
+ *
+ * Unauthorized redistribution or commercial use is strictly prohibited.
+ *******************************************************************************/
+package com.maxprograms.xml.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xml.sax.SAXException;
+
+import com.maxprograms.xml.DTDParser;
+import com.maxprograms.xml.Grammar;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DTDParserBenchmark {
+
+	private File dtd;
+
+	@Setup
+	public void setup() throws IOException {
+		dtd = Corpus.getDTD();
+	}
+
+	@Benchmark
+	public Grammar parse() throws SAXException, IOException {
+		return new DTDParser().parse(dtd);
+	}
+}
@@ -0,0 +1,57 @@
+/*******************************************************************************
+ * Copyright (c) 2022-2026 Maxprograms. All rights reserved.
+ *
+ * This software is the proprietary property of Maxprograms.
+ * Use, modification, and distribution are subject to the terms of the 
+ * Software License Agreement found in the root of this distribution 
+ *
+ * Unauthorized redistribution or commercial use is strictly prohibited.
+ *******************************************************************************/
+package com.maxprograms.xml.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.maxprograms.xml.Element;
+import com.maxprograms.xml.Indenter;
+import com.maxprograms.xml.SAXBuilder;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IndenterBenchmark {
+
+	@Param({ Corpus.XLIFF, Corpus.TMX })
+	public String format;
+
+	@Param({ Corpus.SMALL, Corpus.MEDIUM })
+	public String size;
+
+	private Element root;
+
+	@Setup
+	public void setup() throws Exception {
+		root = new SAXBuilder().build(Corpus.getFile(format, size)).getRootElement();
+	}
+
+	@Benchmark
+	public Element indent() {
+		// indenting is idempotent, the same tree can be processed on every call
+		Indenter.indent(root, 2);
+		return root;
+	}
+}
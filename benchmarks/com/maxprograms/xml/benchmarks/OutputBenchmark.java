@@ -0,0 +1,64 @@
+/*******************************************************************************
+ * Copyright (c) 2022-2026 Maxprograms. All rights reserved.
+ *
+ * This software is the proprietary property of Maxprograms.
+ * Use, modification, and distribution are subject to the terms of the 
+ * Software License Agreement found in the root of this distribution 
+ *
+ * Unauthorized redistribution or commercial use is strictly prohibited.
+ *******************************************************************************/
+package com.maxprograms.xml.benchmarks;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.maxprograms.xml.CatalogBuilder;
+import com.maxprograms.xml.Document;
+import com.maxprograms.xml.SAXBuilder;
+import com.maxprograms.xml.XMLOutputter;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OutputBenchmark {
+
+	@Param({ Corpus.XLIFF, Corpus.TMX, Corpus.DITA })
+	public String format;
+
+	@Param({ Corpus.SMALL, Corpus.MEDIUM, Corpus.LARGE })
+	public String size;
+
+	private Document document;
+	private XMLOutputter outputter;
+
+	@Setup
+	public void setup() throws Exception {
+		SAXBuilder builder = new SAXBuilder();
+		if (Corpus.DITA.equals(format)) {
+			builder.setEntityResolver(CatalogBuilder.getCatalog(Corpus.getCatalog().getAbsolutePath()));
+		}
+		document = builder.build(Corpus.getFile(format, size));
+		outputter = new XMLOutputter();
+	}
+
+	@Benchmark
+	public void output() throws IOException {
+		outputter.output(document, OutputStream.nullOutputStream());
+	}
+}
@@ -0,0 +1,83 @@
+/*******************************************************************************
+ * Copyright (c) 2022-2026 Maxprograms. All rights reserved.
+ *
+ * This software is the proprietary property of Maxprograms.
+ * Use, modification, and distribution are subject to the terms of the 
+ * Software License Agreement found in the root of this distribution 
+ *
+ * Unauthorized redistribution or commercial use is strictly prohibited.
+ *******************************************************************************/
+package com.maxprograms.xml.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xml.sax.SAXException;
+
+import com.maxprograms.xml.CatalogBuilder;
+import com.maxprograms.xml.Document;
+import com.maxprograms.xml.SAXBuilder;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParseBenchmark {
+
+	@Param({ Corpus.XLIFF, Corpus.TMX, Corpus.DITA })
+	public String format;
+
+	@Param({ Corpus.SMALL, Corpus.MEDIUM, Corpus.LARGE })
+	public String size;
+
+	private File file;
+	private SAXBuilder builder;
+	private SAXBuilder pooledBuilder;
+	private String container;
+
+	@Setup
+	public void setup() throws Exception {
+		file = Corpus.getFile(format, size);
+		builder = new SAXBuilder();
+		pooledBuilder = new SAXBuilder();
+		pooledBuilder.setReuseParsers(true);
+		container = Corpus.XLIFF.equals(format) ? "file" : "body";
+		if (Corpus.DITA.equals(format)) {
+			String catalog = Corpus.getCatalog().getAbsolutePath();
+			builder.setEntityResolver(CatalogBuilder.getCatalog(catalog));
+			pooledBuilder.setEntityResolver(CatalogBuilder.getCatalog(catalog));
+		}
+	}
+
+	@Benchmark
+	public Document build() throws SAXException, IOException, ParserConfigurationException {
+		return builder.build(file);
+	}
+
+	@Benchmark
+	public Document buildReusingParsers() throws SAXException, IOException, ParserConfigurationException {
+		return pooledBuilder.build(file);
+	}
+
+	@Benchmark
+	public Document buildParallel() throws SAXException, IOException, ParserConfigurationException {
+		return pooledBuilder.buildParallel(file.toPath(), container, ForkJoinPool.commonPool());
+	}
+}
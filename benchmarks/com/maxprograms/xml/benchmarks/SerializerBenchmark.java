@@ -0,0 +1,97 @@
+/*******************************************************************************
+ * Copyright (c) 2022-2026 Maxprograms. All rights reserved.
+ *
+ * This software is the proprietary property of Maxprograms.
+ * Use, modification, and distribution are subject to the terms of the 
+ * Software License Agreement found in the root of this distribution 
+ *
+ * Unauthorized redistribution or commercial use is strictly prohibited.
+ *******************************************************************************/
+package com.maxprograms.xml.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.maxprograms.xml.Element;
+import com.maxprograms.xml.NodeSerializers;
+import com.maxprograms.xml.SAXBuilder;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SerializerBenchmark {
+
+	@Param({ Corpus.XLIFF, Corpus.TMX })
+	public String format;
+
+	@Param({ Corpus.SMALL, Corpus.MEDIUM })
+	public String size;
+
+	private Element root;
+	private byte[] encoded;
+	private byte[] serialized;
+
+	@Setup
+	public void setup() throws Exception {
+		root = new SAXBuilder().build(Corpus.getFile(format, size)).getRootElement();
+		encoded = NodeSerializers.ELEMENT.toBytes(root);
+		serialized = javaSerialize();
+		// the benchmark is meaningless if either path loses data
+		if (!root.equals(NodeSerializers.ELEMENT.fromBytes(encoded)) || !root.equals(javaDeserialize())) {
+			throw new IllegalStateException("Round trip changed the element");
+		}
+		if (!root.getName().equals(NodeSerializers.ELEMENT.getName(encoded))) {
+			throw new IllegalStateException("Partial decoding returned a different name");
+		}
+	}
+
+	@Benchmark
+	public byte[] encode() {
+		return NodeSerializers.ELEMENT.toBytes(root);
+	}
+
+	@Benchmark
+	public Element decode() throws IOException {
+		return NodeSerializers.ELEMENT.fromBytes(encoded);
+	}
+
+	@Benchmark
+	public Element decodeHead() throws IOException {
+		return NodeSerializers.ELEMENT.fromBytesHead(encoded);
+	}
+
+	@Benchmark
+	public byte[] javaSerialize() throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (ObjectOutputStream output = new ObjectOutputStream(bytes)) {
+			output.writeObject(root);
+		}
+		return bytes.toByteArray();
+	}
+
+	@Benchmark
+	public Element javaDeserialize() throws IOException, ClassNotFoundException {
+		try (ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(serialized))) {
+			return (Element) input.readObject();
+		}
+	}
+}
@@ -19,6 +19,9 @@ public class Attribute implements XMLNode, Comparable<Attribute> {
 	private static final long serialVersionUID = -859299907013846457L;
 	private String name;
 	private String value;
+	private transient boolean frozen;
+	// the elements that hold this node
+	private transient Object owners;
 
 	protected Attribute() {
 		name = "";
@@ -49,6 +52,10 @@ public class Attribute implements XMLNode, Comparable<Attribute> {
 	}
 
 	public void setValue(String string) {
+		if (frozen) {
+			throw new UnsupportedOperationException(Messages.getString("XMLNode.0"));
+		}
+		Element.attributeChanging(this, owners, string);
 		value = string;
 	}
 
@@ -76,7 +83,7 @@ public class Attribute implements XMLNode, Comparable<Attribute> {
 
 	@Override
 	public int hashCode() {
-		return toString().hashCode();
+		return 31 * name.hashCode() + value.hashCode();
 	}
 
 	public String getLocalName() {
@@ -93,4 +100,15 @@ public class Attribute implements XMLNode, Comparable<Attribute> {
 		return name.substring(0, name.indexOf(':'));
 	}
 
+	void addOwner(Element e) {
+		owners = Containers.add(owners, e);
+	}
+
+	void removeOwner(Element e) {
+		owners = Containers.remove(owners, e);
+	}
+
+	void freeze() {
+		frozen = true;
+	}
 }
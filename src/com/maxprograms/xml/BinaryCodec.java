@@ -0,0 +1,566 @@
+/*******************************************************************************
+ * Copyright (c) 2022-2026 Maxprograms. All rights reserved.
+ *
+ * This software is the proprietary property of Maxprograms.
+ * Use, modification, and distribution are subject to the terms of the 
+ * Software License Agreement found in the root of this distribution 
+ *
+ * Unauthorized redistribution or commercial use is strictly prohibited.
+ *******************************************************************************/
+package com.maxprograms.xml;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Vector;
+
+public class BinaryCodec {
+
+	private static final byte MAGIC_0 = 'X';
+	private static final byte MAGIC_1 = 'B';
+	private static final byte VERSION = 1;
+
+	private static final byte DOCUMENT = 'D';
+	private static final byte ELEMENT = 'E';
+	private static final byte LEAF = 'N';
+
+	private static final int END = 0;
+	private static final int ELEMENT_NODE = 1;
+	private static final int TEXT_NODE = 2;
+	private static final int COMMENT_NODE = 3;
+	private static final int PI_NODE = 4;
+	private static final int CDATA_NODE = 5;
+
+	private static final int SYSTEM_ID = 1;
+	private static final int PUBLIC_ID = 2;
+	private static final int INTERNAL_SUBSET = 4;
+	private static final int ENTITIES = 8;
+	private static final int ATTLIST_DECLARATIONS = 16;
+
+	// streams go through a buffer of this size, which only grows to hold a single long string
+	private static final int STREAM_BUFFER = 65536;
+	private static final int MAX_ARRAY = Integer.MAX_VALUE - 8;
+
+	private byte[] buffer;
+	private int position;
+	private int limit;
+	private OutputStream output;
+	private InputStream input;
+	private Map<String, Integer> nameIds;
+	private List<String> names;
+
+	private BinaryCodec(byte[] buffer) {
+		this.buffer = buffer;
+		limit = buffer.length;
+	}
+
+	public static byte[] encode(Document doc) {
+		BinaryCodec codec = new BinaryCodec(new byte[4096]);
+		codec.writeHeader(DOCUMENT);
+		codec.writeDocument(doc);
+		return Arrays.copyOf(codec.buffer, codec.position);
+	}
+
+	public static byte[] encode(Element element) {
+		BinaryCodec codec = new BinaryCodec(new byte[1024]);
+		codec.writeHeader(ELEMENT);
+		codec.writeTree(element);
+		return Arrays.copyOf(codec.buffer, codec.position);
+	}
+
+	public static byte[] encode(XMLNode node) {
+		if (node instanceof Document doc) {
+			return encode(doc);
+		}
+		if (node instanceof Element element) {
+			return encode(element);
+		}
+		BinaryCodec codec = new BinaryCodec(new byte[64]);
+		codec.writeHeader(LEAF);
+		codec.writeLeaf(node);
+		return Arrays.copyOf(codec.buffer, codec.position);
+	}
+
+	public static void write(Document doc, OutputStream output) throws IOException {
+		BinaryCodec codec = new BinaryCodec(new byte[STREAM_BUFFER]);
+		codec.output = output;
+		try {
+			codec.writeHeader(DOCUMENT);
+			codec.writeDocument(doc);
+			codec.flush();
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	public static void write(Element element, OutputStream output) throws IOException {
+		BinaryCodec codec = new BinaryCodec(new byte[STREAM_BUFFER]);
+		codec.output = output;
+		try {
+			codec.writeHeader(ELEMENT);
+			codec.writeTree(element);
+			codec.flush();
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	public static Document decodeDocument(byte[] data) throws IOException {
+		BinaryCodec codec = new BinaryCodec(data);
+		try {
+			codec.readHeader(DOCUMENT);
+			return codec.readDocument();
+		} catch (RuntimeException e) {
+			throw invalid(e);
+		}
+	}
+
+	public static Element decodeElement(byte[] data) throws IOException {
+		BinaryCodec codec = new BinaryCodec(data);
+		try {
+			codec.readHeader(ELEMENT);
+			codec.readVarint();
+			return codec.readTree();
+		} catch (RuntimeException e) {
+			throw invalid(e);
+		}
+	}
+
+	public static XMLNode decodeNode(byte[] data) throws IOException {
+		if (data.length < 4) {
+			throw invalid(null);
+		}
+		switch (data[3]) {
+			case DOCUMENT:
+				return decodeDocument(data);
+			case ELEMENT:
+				return decodeElement(data);
+			default:
+				BinaryCodec codec = new BinaryCodec(data);
+				try {
+					codec.readHeader(LEAF);
+					return codec.readLeaf(codec.readVarint());
+				} catch (RuntimeException e) {
+					throw invalid(e);
+				}
+		}
+	}
+
+	// decodes only the name and attributes of an encoded element
+	public static Element decodeHead(byte[] data) throws IOException {
+		BinaryCodec codec = new BinaryCodec(data);
+		try {
+			codec.readHeader(ELEMENT);
+			codec.readVarint();
+			return codec.readHead();
+		} catch (RuntimeException e) {
+			throw invalid(e);
+		}
+	}
+
+	public static Document readDocument(InputStream input) throws IOException {
+		BinaryCodec codec = reader(input);
+		try {
+			codec.readHeader(DOCUMENT);
+			return codec.readDocument();
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		} catch (RuntimeException e) {
+			throw invalid(e);
+		}
+	}
+
+	public static Element readElement(InputStream input) throws IOException {
+		BinaryCodec codec = reader(input);
+		try {
+			codec.readHeader(ELEMENT);
+			codec.readVarint();
+			return codec.readTree();
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		} catch (RuntimeException e) {
+			throw invalid(e);
+		}
+	}
+
+	private static BinaryCodec reader(InputStream input) {
+		BinaryCodec codec = new BinaryCodec(new byte[STREAM_BUFFER]);
+		codec.input = input;
+		codec.limit = 0;
+		return codec;
+	}
+
+	private void writeHeader(byte kind) {
+		ensureCapacity(4);
+		buffer[position++] = MAGIC_0;
+		buffer[position++] = MAGIC_1;
+		buffer[position++] = VERSION;
+		buffer[position++] = kind;
+		nameIds = new HashMap<>();
+	}
+
+	private void readHeader(byte kind) throws IOException {
+		if (!fill(4) || buffer[0] != MAGIC_0 || buffer[1] != MAGIC_1 || buffer[2] != VERSION
+				|| buffer[3] != kind) {
+			throw invalid(null);
+		}
+		position = 4;
+		names = new ArrayList<>();
+	}
+
+	private void writeDocument(Document doc) {
+		int flags = 0;
+		if (doc.getSystemId() != null) {
+			flags |= SYSTEM_ID;
+		}
+		if (doc.getPublicId() != null) {
+			flags |= PUBLIC_ID;
+		}
+		if (doc.getInternalSubset() != null) {
+			flags |= INTERNAL_SUBSET;
+		}
+		if (doc.getEntities() != null) {
+			flags |= ENTITIES;
+		}
+		if (doc.getAttlistDeclarations() != null) {
+			flags |= ATTLIST_DECLARATIONS;
+		}
+		writeVarint(flags);
+		writeString(doc.getEncoding().name());
+		if ((flags & SYSTEM_ID) != 0) {
+			writeString(doc.getSystemId());
+		}
+		if ((flags & PUBLIC_ID) != 0) {
+			writeString(doc.getPublicId());
+		}
+		if ((flags & INTERNAL_SUBSET) != 0) {
+			writeString(doc.getInternalSubset());
+		}
+		if ((flags & ENTITIES) != 0) {
+			Map<String, String> entities = doc.getEntities();
+			writeVarint(entities.size());
+			for (Map.Entry<String, String> entry : entities.entrySet()) {
+				writeString(entry.getKey());
+				writeString(entry.getValue());
+			}
+		}
+		if ((flags & ATTLIST_DECLARATIONS) != 0) {
+			List<AttlistDecl> declarations = doc.getAttlistDeclarations();
+			writeVarint(declarations.size());
+			for (AttlistDecl declaration : declarations) {
+				writeString(declaration.toString());
+			}
+		}
+		List<XMLNode> content = doc.getContent();
+		writeVarint(content.size());
+		for (XMLNode node : content) {
+			if (node.getNodeType() == XMLNode.ELEMENT_NODE) {
+				writeTree((Element) node);
+			} else {
+				writeLeaf(node);
+			}
+		}
+	}
+
+	private Document readDocument() {
+		int flags = readVarint();
+		String encoding = readString();
+		String systemId = (flags & SYSTEM_ID) != 0 ? readString() : null;
+		String publicId = (flags & PUBLIC_ID) != 0 ? readString() : null;
+		String internalSubset = (flags & INTERNAL_SUBSET) != 0 ? readString() : null;
+		Map<String, String> entities = null;
+		if ((flags & ENTITIES) != 0) {
+			int count = readVarint();
+			entities = new HashMap<>(count * 2);
+			for (int i = 0; i < count; i++) {
+				entities.put(readString(), readString());
+			}
+		}
+		List<AttlistDecl> declarations = null;
+		if ((flags & ATTLIST_DECLARATIONS) != 0) {
+			int count = readVarint();
+			declarations = new Vector<>(count);
+			for (int i = 0; i < count; i++) {
+				declarations.add(new AttlistDecl(readString()));
+			}
+		}
+		int count = readVarint();
+		List<XMLNode> content = new Vector<>(count);
+		for (int i = 0; i < count; i++) {
+			int type = readVarint();
+			content.add(type == ELEMENT_NODE ? readTree() : readLeaf(type));
+		}
+		Document doc = new Document(content);
+		doc.setEncoding(encoding);
+		doc.setDocType(publicId, systemId);
+		doc.setInternalSubset(internalSubset);
+		doc.setEntities(entities);
+		doc.setAttlistDeclarations(declarations);
+		return doc;
+	}
+
+	private void writeTree(Element root) {
+		TreeWalker.walk(root, new ITreeVisitor<RuntimeException>() {
+
+			@Override
+			public boolean startElement(Element element) {
+				writeVarint(ELEMENT_NODE);
+				writeName(element.getName());
+				int count = element.getAttributeCount();
+				writeVarint(count);
+				for (Attribute a : element.getAttributes()) {
+					writeName(a.getName());
+					writeString(a.getValue());
+				}
+				return true;
+			}
+
+			@Override
+			public void endElement(Element element) {
+				writeVarint(END);
+			}
+
+			@Override
+			public void visit(XMLNode node) {
+				writeLeaf(node);
+			}
+		});
+	}
+
+	// the ELEMENT_NODE tag has already been read
+	private Element readTree() {
+		Element root = readHead();
+		ArrayDeque<Element> stack = new ArrayDeque<>();
+		Element current = root;
+		while (true) {
+			int type = readVarint();
+			if (type == END) {
+				if (stack.isEmpty()) {
+					return root;
+				}
+				current = stack.pop();
+			} else if (type == ELEMENT_NODE) {
+				Element child = readHead();
+				current.addContent(child);
+				stack.push(current);
+				current = child;
+			} else {
+				current.addContent(readLeaf(type));
+			}
+		}
+	}
+
+	private Element readHead() {
+		Element element = new Element(readName());
+		int count = readVarint();
+		if (count > 0) {
+			Attribute[] attributes = new Attribute[count];
+			for (int i = 0; i < count; i++) {
+				attributes[i] = new Attribute(readName(), readString());
+			}
+			element.initAttributes(attributes);
+		}
+		return element;
+	}
+
+	private void writeLeaf(XMLNode node) {
+		switch (node.getNodeType()) {
+			case XMLNode.TEXT_NODE:
+				writeVarint(TEXT_NODE);
+				writeString(((TextNode) node).getText());
+				break;
+			case XMLNode.COMMENT_NODE:
+				writeVarint(COMMENT_NODE);
+				writeString(((Comment) node).getText());
+				break;
+			case XMLNode.PROCESSING_INSTRUCTION_NODE:
+				writeVarint(PI_NODE);
+				writeString(((PI) node).getTarget());
+				writeString(((PI) node).getData());
+				break;
+			case XMLNode.CDATA_SECTION_NODE:
+				writeVarint(CDATA_NODE);
+				writeString(((CData) node).getData());
+				break;
+			default:
+				throw new IllegalArgumentException(Messages.getString("BinaryCodec.1"));
+		}
+	}
+
+	private XMLNode readLeaf(int type) {
+		switch (type) {
+			case TEXT_NODE:
+				return new TextNode(readString());
+			case COMMENT_NODE:
+				return new Comment(readString());
+			case PI_NODE:
+				return new PI(readString(), readString());
+			case CDATA_NODE:
+				return new CData(readString());
+			default:
+				throw new IllegalStateException();
+		}
+	}
+
+	private void writeName(String name) {
+		Integer id = nameIds.get(name);
+		if (id != null) {
+			writeVarint(id + 1);
+			return;
+		}
+		nameIds.put(name, nameIds.size());
+		writeVarint(0);
+		writeString(name);
+	}
+
+	private String readName() {
+		int id = readVarint();
+		if (id == 0) {
+			String name = readString();
+			names.add(name);
+			return name;
+		}
+		return names.get(id - 1);
+	}
+
+	// length + 1 followed by UTF-8 bytes; 0 stands for null
+	private void writeString(String value) {
+		if (value == null) {
+			writeVarint(0);
+			return;
+		}
+		int length = value.length();
+		// reserved up front so a flush cannot separate the length from the start of the string
+		ensureCapacity(length + 5);
+		int start = position;
+		writeVarint(length + 1);
+		for (int i = 0; i < length; i++) {
+			char c = value.charAt(i);
+			if (c >= 0x80) {
+				// not ASCII: rewrite with the UTF-8 byte length
+				position = start;
+				byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+				writeVarint(bytes.length + 1);
+				ensureCapacity(bytes.length);
+				System.arraycopy(bytes, 0, buffer, position, bytes.length);
+				position += bytes.length;
+				return;
+			}
+			buffer[position + i] = (byte) c;
+		}
+		position += length;
+	}
+
+	private String readString() {
+		int length = readVarint() - 1;
+		if (length == -1) {
+			return null;
+		}
+		if (length < 0 || !fill(length)) {
+			throw new IllegalStateException();
+		}
+		String value = new String(buffer, position, length, StandardCharsets.UTF_8);
+		position += length;
+		return value;
+	}
+
+	private void writeVarint(int value) {
+		ensureCapacity(5);
+		while ((value & ~0x7F) != 0) {
+			buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		buffer[position++] = (byte) value;
+	}
+
+	private int readVarint() {
+		if (limit - position < 5) {
+			fill(5);
+		}
+		int value = 0;
+		int shift = 0;
+		while (true) {
+			if (position == limit) {
+				throw new IllegalStateException();
+			}
+			byte b = buffer[position++];
+			value |= (b & 0x7F) << shift;
+			if (b >= 0) {
+				return value;
+			}
+			shift += 7;
+		}
+	}
+
+	private void ensureCapacity(int extra) {
+		if (extra <= buffer.length - position) {
+			return;
+		}
+		if (output != null) {
+			flush();
+			if (extra <= buffer.length) {
+				return;
+			}
+		}
+		long needed = (long) position + extra;
+		if (needed > MAX_ARRAY) {
+			throw new UncheckedIOException(new IOException(Messages.getString("BinaryCodec.2")));
+		}
+		buffer = Arrays.copyOf(buffer, (int) Math.min(Math.max(needed, buffer.length * 2L), MAX_ARRAY));
+	}
+
+	private void flush() {
+		if (position > 0) {
+			try {
+				output.write(buffer, 0, position);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			position = 0;
+		}
+	}
+
+	// makes count bytes available, reading them from the input when there is one;
+	// the buffer grows only as data arrives, so a corrupt length cannot force a large allocation
+	private boolean fill(int count) {
+		if (count <= limit - position) {
+			return true;
+		}
+		if (input == null) {
+			return false;
+		}
+		if (count > MAX_ARRAY) {
+			throw new UncheckedIOException(new IOException(Messages.getString("BinaryCodec.2")));
+		}
+		System.arraycopy(buffer, position, buffer, 0, limit - position);
+		limit -= position;
+		position = 0;
+		try {
+			while (limit < count) {
+				if (limit == buffer.length) {
+					buffer = Arrays.copyOf(buffer, buffer.length > count / 2 ? count : buffer.length * 2);
+				}
+				int read = input.read(buffer, limit, buffer.length - limit);
+				if (read == -1) {
+					return false;
+				}
+				limit += read;
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return true;
+	}
+
+	private static IOException invalid(Exception cause) {
+		return new IOException(Messages.getString("BinaryCodec.0"), cause);
+	}
+}
@@ -0,0 +1,126 @@
+/*******************************************************************************
+ * Copyright (c) 2022-2026 Maxprograms. All rights reserved.
+ *
+ * This software is the proprietary property of Maxprograms.
+ * Use, modification, and distribution are subject to the terms of the 
+ * Software License Agreement found in the root of this distribution 
+ *
+ * Unauthorized redistribution or commercial use is strictly prohibited.
+ *******************************************************************************/
+package com.maxprograms.xml;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+public class ByteBufferInputStream extends InputStream {
+
+	// a single mapping cannot exceed 2 GB
+	static final int CHUNK_SIZE = 1 << 30;
+
+	private final ByteBuffer[] buffers;
+	private int current;
+	private int markBuffer;
+	private int markPosition;
+
+	public ByteBufferInputStream(ByteBuffer... buffers) {
+		this.buffers = buffers;
+		markBuffer = 0;
+		markPosition = buffers.length > 0 ? buffers[0].position() : 0;
+	}
+
+	public static ByteBufferInputStream map(Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			return new ByteBufferInputStream(map(channel));
+		}
+	}
+
+	// maps the whole channel read-only; the mappings stay valid after the channel is closed
+	static ByteBuffer[] map(FileChannel channel) throws IOException {
+		long length = channel.size();
+		ByteBuffer[] chunks = new ByteBuffer[(int) ((length + CHUNK_SIZE - 1) / CHUNK_SIZE)];
+		for (int i = 0; i < chunks.length; i++) {
+			long start = (long) i * CHUNK_SIZE;
+			chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(CHUNK_SIZE, length - start));
+		}
+		return chunks;
+	}
+
+	private ByteBuffer next() {
+		while (current < buffers.length) {
+			if (buffers[current].hasRemaining()) {
+				return buffers[current];
+			}
+			current++;
+		}
+		return null;
+	}
+
+	@Override
+	public int read() throws IOException {
+		ByteBuffer buffer = next();
+		return buffer != null ? buffer.get() & 0xFF : -1;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if (len == 0) {
+			return 0;
+		}
+		ByteBuffer buffer = next();
+		if (buffer == null) {
+			return -1;
+		}
+		int count = Math.min(len, buffer.remaining());
+		buffer.get(b, off, count);
+		return count;
+	}
+
+	@Override
+	public long skip(long n) throws IOException {
+		long skipped = 0;
+		ByteBuffer buffer;
+		while (skipped < n && (buffer = next()) != null) {
+			int count = (int) Math.min(n - skipped, buffer.remaining());
+			buffer.position(buffer.position() + count);
+			skipped += count;
+		}
+		return skipped;
+	}
+
+	@Override
+	public int available() throws IOException {
+		long remaining = 0;
+		for (int i = current; i < buffers.length; i++) {
+			remaining += buffers[i].remaining();
+		}
+		return (int) Math.min(Integer.MAX_VALUE, remaining);
+	}
+
+	@Override
+	public boolean markSupported() {
+		return true;
+	}
+
+	@Override
+	public synchronized void mark(int readlimit) {
+		next();
+		markBuffer = Math.min(current, buffers.length - 1);
+		markPosition = markBuffer >= 0 ? buffers[markBuffer].position() : 0;
+	}
+
+	@Override
+	public synchronized void reset() throws IOException {
+		if (buffers.length == 0) {
+			return;
+		}
+		for (int i = markBuffer + 1; i <= Math.min(current, buffers.length - 1); i++) {
+			buffers[i].position(0);
+		}
+		buffers[markBuffer].position(markPosition);
+		current = markBuffer;
+	}
+}
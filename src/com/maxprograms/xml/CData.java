@@ -55,7 +55,7 @@ public class CData implements XMLNode {
 
 	@Override
 	public int hashCode() {
-		return toString().hashCode();
+		return value.hashCode();
 	}
 
 }
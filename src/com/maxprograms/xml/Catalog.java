@@ -57,7 +57,7 @@ public class Catalog implements EntityResolver2 {
     private Map<String, Catalog> delegateCatalogs;
     private String workDir;
     private String base = "";
-    private String documentParent = "";
+    private ThreadLocal<String> documentParent = ThreadLocal.withInitial(() -> "");
     private String prefer = "public";
 
     protected Catalog(String catalogFile)
@@ -549,7 +549,8 @@ public class Catalog implements EntityResolver2 {
             }
             // this resource is not in catalog.
 
-            if (!documentParent.isEmpty()) {
+            String parentFolder = documentParent.get();
+            if (!parentFolder.isEmpty()) {
                 // try to find the file in parent folder
                 File f = new File(systemId);
                 String name = f.getAbsolutePath();
@@ -561,14 +562,14 @@ public class Catalog implements EntityResolver2 {
                         name = f.getName();
                     }
                 }
-                File parent = new File(documentParent);
+                File parent = new File(parentFolder);
                 File file = new File(parent, name);
                 if (file.exists()) {
                     return file.getAbsolutePath();
                 }
             }
             try {
-                URI u = new URI(baseURI != null ? baseURI : documentParent).resolve(systemId).normalize();
+                URI u = new URI(baseURI != null ? baseURI : documentParent.get()).resolve(systemId).normalize();
                 File file = new File(u.toURL().toString());
                 if (file.exists()) {
                     return file.getAbsolutePath();
@@ -631,28 +632,28 @@ public class Catalog implements EntityResolver2 {
     }
 
     public void currentDocumentBase(String parentFile) {
-        documentParent = parentFile;
+        documentParent.set(parentFile);
     }
 
     public String getDTD(String name) {
         return name != null ? dtdCatalog.get(name) : null;
     }
 
-    public void addDtdPublicEntity(String publicId, String path) {
+    public synchronized void addDtdPublicEntity(String publicId, String path) {
         if (dtdPublicEntities == null) {
             dtdPublicEntities = new Hashtable<>();
         }
         dtdPublicEntities.computeIfAbsent(publicId, k -> path);
     }
 
-    public void addDtdSystemEntity(String systemId, String path) {
+    public synchronized void addDtdSystemEntity(String systemId, String path) {
         if (dtdSystemEntities == null) {
             dtdSystemEntities = new Hashtable<>();
         }
         dtdSystemEntities.computeIfAbsent(systemId, k -> path);
     }
 
-    public void parseDTD(String publicId) {
+    public synchronized void parseDTD(String publicId) {
         if (parsedDTDs == null) {
             parsedDTDs = new TreeSet<>();
         }
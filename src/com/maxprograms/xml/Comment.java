@@ -17,6 +17,9 @@ public class Comment implements XMLNode {
 
 	private static final long serialVersionUID = 4121792990661005580L;
 	private String value;
+	private transient boolean frozen;
+	// the elements that hold this node
+	private transient Object owners;
 
 	protected Comment(String text) {
 		value = text;
@@ -27,6 +30,10 @@ public class Comment implements XMLNode {
 	}
 
 	public void setText(String text) {
+		if (frozen) {
+			throw new UnsupportedOperationException(Messages.getString("XMLNode.0"));
+		}
+		Element.contentChanging(owners);
 		value = text;
 	}
 
@@ -59,7 +66,18 @@ public class Comment implements XMLNode {
 
 	@Override
 	public int hashCode() {
-		return toString().hashCode();
+		return value.hashCode();
+	}
+
+	void addOwner(Element e) {
+		owners = Containers.add(owners, e);
 	}
 
+	void removeOwner(Element e) {
+		owners = Containers.remove(owners, e);
+	}
+
+	void freeze() {
+		frozen = true;
+	}
 }
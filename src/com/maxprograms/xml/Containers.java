@@ -0,0 +1,85 @@
+/*******************************************************************************
+ * Copyright (c) 2022-2026 Maxprograms. All rights reserved.
+ *
+ * This software is the proprietary property of Maxprograms.
+ * Use, modification, and distribution are subject to the terms of the 
+ * Software License Agreement found in the root of this distribution 
+ *
+ * Unauthorized redistribution or commercial use is strictly prohibited.
+ *******************************************************************************/
+package com.maxprograms.xml;
+
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+
+// the containers of a node kept in one field: null, a single Element, or a WeakReference<Element>[]
+// once there are more; containers hold their nodes, so a node never keeps a discarded tree alive
+final class Containers {
+
+	private static final Element[] NONE = new Element[0];
+
+	private Containers() {
+		// do not instantiate
+	}
+
+	static Object add(Object group, Element e) {
+		if (group == null) {
+			return e;
+		}
+		Element[] live = toArray(group);
+		@SuppressWarnings("unchecked")
+		WeakReference<Element>[] result = new WeakReference[live.length + 1];
+		for (int i = 0; i < live.length; i++) {
+			result[i] = new WeakReference<>(live[i]);
+		}
+		result[live.length] = new WeakReference<>(e);
+		return result;
+	}
+
+	// removes one occurrence of the element, and the containers already collected
+	static Object remove(Object group, Element e) {
+		if (group == e) {
+			return null;
+		}
+		if (!(group instanceof WeakReference<?>[])) {
+			return group;
+		}
+		Element[] live = toArray(group);
+		for (int i = 0; i < live.length; i++) {
+			if (live[i] == e) {
+				System.arraycopy(live, i + 1, live, i, live.length - i - 1);
+				live = Arrays.copyOf(live, live.length - 1);
+				break;
+			}
+		}
+		if (live.length == 0) {
+			return null;
+		}
+		@SuppressWarnings("unchecked")
+		WeakReference<Element>[] result = new WeakReference[live.length];
+		for (int i = 0; i < live.length; i++) {
+			result[i] = new WeakReference<>(live[i]);
+		}
+		return result;
+	}
+
+	// the containers still reachable, oldest first
+	static Element[] toArray(Object group) {
+		if (group == null) {
+			return NONE;
+		}
+		if (group instanceof Element e) {
+			return new Element[] { e };
+		}
+		WeakReference<?>[] refs = (WeakReference<?>[]) group;
+		Element[] result = new Element[refs.length];
+		int count = 0;
+		for (WeakReference<?> ref : refs) {
+			Element e = (Element) ref.get();
+			if (e != null) {
+				result[count++] = e;
+			}
+		}
+		return count == result.length ? result : Arrays.copyOf(result, count);
+	}
+}
@@ -30,13 +30,16 @@ import org.xml.sax.SAXException;
 
 public class CustomContentHandler implements IContentHandler {
 
+	private static final int MAX_BUFFER = 65536;
+
 	private Document doc;
 	private Element current;
 	Stack<Element> stack;
 	private List<XMLNode> prolog;
 	private boolean inDocument;
 	private boolean inCDATA = false;
-	private StringBuffer cdata;
+	private StringBuilder cdata;
+	private StringBuilder text;
 	private List<String[]> namespaces;
 	private Map<String, String> namespacesInUse;
 	private Map<String, String> pendingNamespaces;
@@ -46,39 +49,55 @@ public class CustomContentHandler implements IContentHandler {
 	private boolean isRelaxNG;
 	private Map<String, Map<String, String>> defaultAttributes;
 	private File documentBase;
+	private Map<String, IElementHandler> elementHandlers;
+	private int streamedDepth;
+	private NamePool namePool;
+	private boolean indexing;
 
 	public CustomContentHandler() {
 		doc = null;
 		stack = new Stack<>();
+		text = new StringBuilder();
+		cdata = new StringBuilder();
 	}
 
 	@Override
 	public void characters(char[] ch, int start, int length) throws SAXException {
-		String string = new String(ch, start, length);
 		if (!inCDATA) {
-			if (current != null) {
-				current.addContent(new TextNode(string));
-			} else {
-				if (prolog == null) {
-					prolog = new Vector<>();
-				}
-				prolog.add(new TextNode(string));
-			}
+			text.append(ch, start, length);
+		} else {
+			cdata.append(ch, start, length);
+		}
+	}
+
+	private void flushText() {
+		if (text.isEmpty()) {
+			return;
+		}
+		TextNode node = new TextNode(text.toString());
+		if (current != null) {
+			current.addContent(node);
 		} else {
-			if (cdata == null) {
-				cdata = new StringBuffer();
+			if (prolog == null) {
+				prolog = new Vector<>();
 			}
-			cdata.append(string);
+			prolog.add(node);
+		}
+		text.setLength(0);
+		if (text.capacity() > MAX_BUFFER) {
+			text = new StringBuilder();
 		}
 	}
 
 	@Override
 	public void endDocument() throws SAXException {
+		flushText();
 		inDocument = false;
 	}
 
 	@Override
 	public void endElement(String uri, String localName, String qName) throws SAXException {
+		flushText();
 		try {
 			if (isRelaxNG) {
 				Map<String, String> map = null;
@@ -99,7 +118,15 @@ public class CustomContentHandler implements IContentHandler {
 					}
 				}
 			}
+			Element finished = current;
 			current = stack.pop();
+			if (elementHandlers != null && elementHandlers.containsKey(qName) && --streamedDepth == 0) {
+				IElementHandler handler = elementHandlers.get(qName);
+				if (finished != current) {
+					current.detachLastChild(finished);
+				}
+				handler.handleElement(finished);
+			}
 		} catch (EmptyStackException es) {
 			throw new SAXException(Messages.getString("CustomContentHandler.0"));
 		}
@@ -112,18 +139,12 @@ public class CustomContentHandler implements IContentHandler {
 
 	@Override
 	public void ignorableWhitespace(char[] ch, int start, int length) throws SAXException {
-		if (current != null) {
-			current.addContent(new String(ch, start, length));
-		} else {
-			if (prolog == null) {
-				prolog = new Vector<>();
-			}
-			prolog.add(new TextNode(new String(ch, start, length)));
-		}
+		text.append(ch, start, length);
 	}
 
 	@Override
 	public void processingInstruction(String target, String data) throws SAXException {
+		flushText();
 		if (target.equals("xml-model")) {
 			List<Attribute> atts = getPseudoAttributes(data);
 			Iterator<Attribute> it = atts.iterator();
@@ -241,11 +262,16 @@ public class CustomContentHandler implements IContentHandler {
 
 	@Override
 	public void startElement(String uri, String localName, String qName, Attributes atts) throws SAXException {
+		flushText();
+		qName = intern(qName);
 		if (doc == null) {
 			doc = new Document(uri, qName, prolog);
 			if (encoding != null) {
 				doc.setEncoding(encoding);
 			}
+			if (indexing) {
+				doc.createIndex();
+			}
 			prolog = null;
 		}
 		if (current == null) {
@@ -258,7 +284,7 @@ public class CustomContentHandler implements IContentHandler {
 				Iterator<String[]> it = namespaces.iterator();
 				while (it.hasNext()) {
 					String[] pair = it.next();
-					current.setAttribute("xmlns:" + pair[0], pair[1]);
+					current.setAttribute(intern("xmlns:" + pair[0]), pair[1]);
 					namespacesInUse.put(pair[0], pair[1]);
 				}
 				namespaces = null;
@@ -273,7 +299,7 @@ public class CustomContentHandler implements IContentHandler {
 				}
 				if (pendingNamespaces.containsKey(prefix)) {
 					namespacesInUse.put(prefix, pendingNamespaces.get(prefix));
-					child.setAttribute("xmlns:" + prefix, pendingNamespaces.get(prefix));
+					child.setAttribute(intern("xmlns:" + prefix), pendingNamespaces.get(prefix));
 					pendingNamespaces.remove(prefix);
 				}
 			}
@@ -281,23 +307,45 @@ public class CustomContentHandler implements IContentHandler {
 			stack.push(current);
 			current = child;
 		}
+		if (elementHandlers != null && elementHandlers.containsKey(qName)) {
+			streamedDepth++;
+		}
 		for (int i = 0; i < atts.getLength(); i++) {
 			String u = atts.getURI(i);
 			String name = atts.getQName(i);
 			if (u.equals("http://www.w3.org/XML/1998/namespace") && !name.startsWith("xml:")) {
 				name = "xml:" + name;
 			}
-			current.setAttribute(name, atts.getValue(i));
+			current.setAttribute(intern(name), atts.getValue(i));
 		}
 	}
 
-	private static String getPrefixPart(String qName) {
+	private String getPrefixPart(String qName) {
 		int index = qName.indexOf(':');
-		return (index >= 0) ? qName.substring(0, index) : "";
+		return (index >= 0) ? intern(qName.substring(0, index)) : "";
+	}
+
+	// names are pooled only when a pool was supplied, for sharing them across documents;
+	// the parser already shares the names within one document
+	private String intern(String name) {
+		return namePool != null ? namePool.intern(name) : name;
+	}
+
+	public void setNamePool(NamePool pool) {
+		namePool = pool;
+	}
+
+	public NamePool getNamePool() {
+		return namePool;
+	}
+
+	public void setIndexing(boolean value) {
+		indexing = value;
 	}
 
 	@Override
 	public void startPrefixMapping(String prefix, String uri) throws SAXException {
+		prefix = intern(prefix);
 		if (!prefix.isEmpty() && inDocument) {
 			if (current != null) {
 				if (namespacesInUse == null) {
@@ -331,6 +379,7 @@ public class CustomContentHandler implements IContentHandler {
 		if (!inDocument) {
 			return;
 		}
+		flushText();
 		if (current == null) {
 			if (prolog == null) {
 				prolog = new Vector<>();
@@ -353,7 +402,10 @@ public class CustomContentHandler implements IContentHandler {
 		} else {
 			doc.addContent(new CData(cdata.toString()));
 		}
-		cdata = null;
+		cdata.setLength(0);
+		if (cdata.capacity() > MAX_BUFFER) {
+			cdata = new StringBuilder();
+		}
 	}
 
 	@Override
@@ -368,10 +420,8 @@ public class CustomContentHandler implements IContentHandler {
 
 	@Override
 	public void startCDATA() throws SAXException {
+		flushText();
 		inCDATA = true;
-		if (cdata == null) {
-			cdata = new StringBuffer();
-		}
 	}
 
 	@Override
@@ -385,6 +435,9 @@ public class CustomContentHandler implements IContentHandler {
 			if (encoding != null) {
 				doc.setEncoding(encoding);
 			}
+			if (indexing) {
+				doc.createIndex();
+			}
 		}
 		inDocument = false;
 	}
@@ -394,6 +447,17 @@ public class CustomContentHandler implements IContentHandler {
 		// do nothing, let the EntityResolver handle this
 	}
 
+	public void setElementHandler(String elementName, IElementHandler handler) {
+		if (elementHandlers == null) {
+			elementHandlers = new Hashtable<>();
+		}
+		if (handler == null) {
+			elementHandlers.remove(elementName);
+		} else {
+			elementHandlers.put(elementName, handler);
+		}
+	}
+
 	public String getSystemID() {
 		return systemId;
 	}
@@ -406,6 +470,10 @@ public class CustomContentHandler implements IContentHandler {
 		doc.setInternalSubset(internalSubset);
 	}
 
+	boolean hasDefaultAttributes() {
+		return isRelaxNG;
+	}
+
 	@Override
 	public void setCatalog(Catalog catalog) {
 		this.catalog = catalog;
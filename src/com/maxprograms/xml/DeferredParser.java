@@ -0,0 +1,680 @@
+/*******************************************************************************
+ * Copyright (c) 2022-2026 Maxprograms. All rights reserved.
+ *
+ * This software is the proprietary property of Maxprograms.
+ * Use, modification, and distribution are subject to the terms of the 
+ * Software License Agreement found in the root of this distribution 
+ *
+ * Unauthorized redistribution or commercial use is strictly prohibited.
+ *******************************************************************************/
+package com.maxprograms.xml;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.xml.sax.SAXException;
+
+public class DeferredParser {
+
+	private static final int CHUNK_BITS = 30;
+	private static final int CHUNK_SIZE = ByteBufferInputStream.CHUNK_SIZE;
+
+	// subtrees at least this long remember where they end, so deep documents are not rescanned at every level
+	private static final int REMEMBER_END = 4096;
+	// references nested deeper than this in entity values can only come from a recursive entity
+	private static final int MAX_ENTITY_DEPTH = 64;
+
+	private final Path path;
+	private final ByteBuffer[] chunks;
+	private final long length;
+	private final Charset charset;
+	private final Map<String, String> entities;
+	private final NamePool namePool;
+	private final Map<Long, Long> ends;
+
+	public DeferredParser(Path path, Charset charset, Map<String, String> entities, NamePool namePool)
+			throws IOException {
+		this.path = path;
+		this.charset = charset;
+		this.entities = entities;
+		this.namePool = namePool != null ? namePool : new NamePool();
+		ends = new ConcurrentHashMap<>();
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			length = channel.size();
+			chunks = ByteBufferInputStream.map(channel);
+		}
+	}
+
+	public boolean isSupported() {
+		// markup is located by scanning bytes, so the encoding must be ASCII compatible
+		byte[] bytes = "<?x".getBytes(charset);
+		if (bytes.length != 3 || bytes[0] != '<' || bytes[1] != '?' || bytes[2] != 'x') {
+			return false;
+		}
+		return length < 2 || (byteAt(0) != 0 && byteAt(1) != 0 && byteAt(0) != 0xFE && byteAt(0) != 0xFF);
+	}
+
+	// the root element was built from its start tag; its content and the epilog are read from the file
+	public void attach(Document doc) throws SAXException {
+		try {
+			attachRoot(doc);
+		} catch (IllegalStateException e) {
+			throw new SAXException(e.getMessage());
+		}
+	}
+
+	private void attachRoot(Document doc) {
+		long contentStart = skipTag(skipProlog());
+		if (byteAt(contentStart - 2) == '/') {
+			addEpilog(doc, contentStart);
+			return;
+		}
+		long contentEnd = findRootEnd();
+		if (contentEnd > contentStart) {
+			doc.getRootElement().setDeferred(new Range(this, contentStart, contentEnd));
+		}
+		addEpilog(doc, find(">", contentEnd, length) + 1);
+	}
+
+	// returns the position of the root start tag
+	private long skipProlog() {
+		long pos = 0;
+		if (length >= 3 && byteAt(0) == 0xEF && byteAt(1) == 0xBB && byteAt(2) == 0xBF) {
+			pos = 3;
+		}
+		while (true) {
+			pos = skipSpace(pos, length);
+			if (pos >= length || byteAt(pos) != '<') {
+				throw malformed(pos);
+			}
+			if (startsWith(pos, "<?")) {
+				pos = find("?>", pos + 2, length) + 2;
+			} else if (startsWith(pos, "<!--")) {
+				pos = find("-->", pos + 4, length) + 3;
+			} else if (startsWith(pos, "<!")) {
+				pos = skipDoctype(pos + 2);
+			} else {
+				return pos;
+			}
+		}
+	}
+
+	// finds the first non empty element with the given name and splits its content between children;
+	// returns null when there is no such element or its content is too small to split
+	Split split(String container, long minChunk, int maxParts) throws SAXException {
+		try {
+			return findSplit(container, minChunk, maxParts);
+		} catch (IllegalStateException e) {
+			throw new SAXException(e.getMessage());
+		}
+	}
+
+	private Split findSplit(String container, long minChunk, int maxParts) {
+		byte[] target = container.getBytes(charset);
+		long rootStart = skipProlog();
+		long[] tagStarts = new long[16];
+		long[] nameEnds = new long[16];
+		long[] contentStarts = new long[16];
+		int[] indexes = new int[16];
+		int[] children = new int[16];
+		int depth = 0;
+		long pos = rootStart;
+		while (true) {
+			pos = indexOf('<', pos, length);
+			if (pos == length) {
+				return null;
+			}
+			int next = byteAt(pos + 1);
+			if (next == '/') {
+				if (--depth == 0) {
+					return null;
+				}
+				pos = find(">", pos, length) + 1;
+			} else if (next == '?') {
+				pos = find("?>", pos + 2, length) + 2;
+			} else if (startsWith(pos, "<!--")) {
+				pos = find("-->", pos + 4, length) + 3;
+			} else if (startsWith(pos, "<![CDATA[")) {
+				pos = find("]]>", pos + 9, length) + 3;
+			} else {
+				long nameEnd = pos + 1;
+				while (!isSpace(byteAt(nameEnd)) && byteAt(nameEnd) != '>' && byteAt(nameEnd) != '/') {
+					nameEnd++;
+				}
+				long contentStart = skipTag(pos);
+				int index = depth > 0 ? children[depth - 1]++ : 0;
+				if (byteAt(contentStart - 2) != '/') {
+					if (depth == tagStarts.length) {
+						tagStarts = Arrays.copyOf(tagStarts, depth * 2);
+						nameEnds = Arrays.copyOf(nameEnds, depth * 2);
+						contentStarts = Arrays.copyOf(contentStarts, depth * 2);
+						indexes = Arrays.copyOf(indexes, depth * 2);
+						children = Arrays.copyOf(children, depth * 2);
+					}
+					tagStarts[depth] = pos;
+					nameEnds[depth] = nameEnd;
+					contentStarts[depth] = contentStart;
+					indexes[depth] = index;
+					children[depth] = 0;
+					depth++;
+					if (nameEnd - pos - 1 == target.length && startsWith(pos + 1, target)) {
+						long[] bounds = findBounds(contentStart, minChunk, maxParts);
+						if (bounds == null) {
+							return null;
+						}
+						String[] names = new String[depth];
+						for (int level = 0; level < depth; level++) {
+							names[level] = decode(tagStarts[level] + 1, nameEnds[level]);
+						}
+						return new Split(this, rootStart, Arrays.copyOf(tagStarts, depth),
+								Arrays.copyOf(contentStarts, depth), Arrays.copyOf(indexes, depth), names, bounds);
+					}
+				}
+				pos = contentStart;
+			}
+		}
+	}
+
+	// split points are placed before the start tag of a child element; the last bound is the end of the content
+	private long[] findBounds(long start, long minChunk, int maxParts) {
+		// the content usually fills most of the file, so parts are sized from the file length
+		long size = Math.max(minChunk, (length - start) / Math.max(1, maxParts));
+		List<Long> bounds = new ArrayList<>();
+		bounds.add(start);
+		long goal = start + size;
+		long pos = start;
+		while (true) {
+			pos = indexOf('<', pos, length);
+			if (pos == length) {
+				throw malformed(start);
+			}
+			if (byteAt(pos + 1) == '/') {
+				break;
+			}
+			if (byteAt(pos + 1) == '?') {
+				pos = find("?>", pos + 2, length) + 2;
+			} else if (startsWith(pos, "<!--")) {
+				pos = find("-->", pos + 4, length) + 3;
+			} else if (startsWith(pos, "<![CDATA[")) {
+				pos = find("]]>", pos + 9, length) + 3;
+			} else {
+				if (pos >= goal) {
+					bounds.add(pos);
+					goal = pos + size;
+				}
+				long contentStart = skipTag(pos);
+				if (byteAt(contentStart - 2) == '/') {
+					pos = contentStart;
+				} else {
+					pos = find(">", findEnd(contentStart, length), length) + 1;
+				}
+			}
+		}
+		// a small last part is merged with the previous one
+		if (bounds.size() > 1 && pos - bounds.get(bounds.size() - 1) < minChunk / 2) {
+			bounds.remove(bounds.size() - 1);
+		}
+		if (bounds.size() < 2) {
+			return null;
+		}
+		bounds.add(pos);
+		long[] result = new long[bounds.size()];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = bounds.get(i);
+		}
+		return result;
+	}
+
+	private void slice(long from, long to, List<ByteBuffer> result) {
+		for (long i = from; i < to;) {
+			ByteBuffer chunk = chunks[(int) (i >>> CHUNK_BITS)];
+			int offset = (int) (i & (CHUNK_SIZE - 1));
+			int count = (int) Math.min(to - i, (long) chunk.limit() - offset);
+			result.add(chunk.slice(offset, count));
+			i += count;
+		}
+	}
+
+	private void addEpilog(Document doc, long from) {
+		for (XMLNode node : load(from, length)) {
+			if (node.getNodeType() != XMLNode.TEXT_NODE) {
+				doc.addContent(node);
+			}
+		}
+	}
+
+	// walks back over comments and PIs that follow the root element
+	private long findRootEnd() {
+		long pos = length - 1;
+		while (pos > 0) {
+			while (pos > 0 && isSpace(byteAt(pos))) {
+				pos--;
+			}
+			if (byteAt(pos) != '>') {
+				throw malformed(pos);
+			}
+			if (byteAt(pos - 1) == '-' && byteAt(pos - 2) == '-') {
+				pos = findBack("<!--", pos - 3) - 1;
+			} else if (byteAt(pos - 1) == '?') {
+				pos = findBack("<?", pos - 2) - 1;
+			} else {
+				long start = findBack("<", pos);
+				if (byteAt(start + 1) != '/') {
+					throw malformed(start);
+				}
+				return start;
+			}
+		}
+		throw malformed(0);
+	}
+
+	// reads one level of content; child elements get their own deferred range
+	XMLNode[] load(long start, long end) {
+		List<XMLNode> nodes = new ArrayList<>();
+		long pos = start;
+		long textStart = start;
+		while (true) {
+			pos = indexOf('<', pos, end);
+			if (pos == end) {
+				break;
+			}
+			if (pos > textStart) {
+				nodes.add(new TextNode(expand(decode(textStart, pos), false, textStart)));
+			}
+			if (startsWith(pos, "<!--")) {
+				long close = find("-->", pos + 4, end);
+				nodes.add(new Comment(decode(pos + 4, close)));
+				pos = close + 3;
+			} else if (startsWith(pos, "<![CDATA[")) {
+				long close = find("]]>", pos + 9, end);
+				nodes.add(new CData(decode(pos + 9, close)));
+				pos = close + 3;
+			} else if (startsWith(pos, "<?")) {
+				long close = find("?>", pos + 2, end);
+				long targetEnd = pos + 2;
+				while (targetEnd < close && !isSpace(byteAt(targetEnd))) {
+					targetEnd++;
+				}
+				String target = decode(pos + 2, targetEnd);
+				nodes.add(new PI(target, decode(skipSpace(targetEnd, close), close)));
+				pos = close + 2;
+			} else if (byteAt(pos + 1) == '/') {
+				throw malformed(pos);
+			} else {
+				long nameEnd = pos + 1;
+				while (!isSpace(byteAt(nameEnd)) && byteAt(nameEnd) != '>' && byteAt(nameEnd) != '/') {
+					nameEnd++;
+				}
+				Element element = new Element(namePool.intern(decode(pos + 1, nameEnd)));
+				long contentStart = readAttributes(nameEnd, element);
+				if (byteAt(contentStart - 2) == '/') {
+					pos = contentStart;
+				} else {
+					Long known = ends.remove(contentStart);
+					long contentEnd = known != null ? known : findEnd(contentStart, end);
+					if (contentEnd > contentStart) {
+						element.setDeferred(new Range(this, contentStart, contentEnd));
+					}
+					pos = find(">", contentEnd, end) + 1;
+				}
+				nodes.add(element);
+			}
+			textStart = pos;
+		}
+		if (end > textStart) {
+			nodes.add(new TextNode(expand(decode(textStart, end), false, textStart)));
+		}
+		return nodes.toArray(new XMLNode[nodes.size()]);
+	}
+
+	// returns the position after the start tag
+	private long readAttributes(long pos, Element element) {
+		while (true) {
+			pos = skipSpace(pos, length);
+			int b = byteAt(pos);
+			if (b == '>') {
+				return pos + 1;
+			}
+			if (b == '/') {
+				return pos + 2;
+			}
+			long attNameEnd = pos;
+			while (byteAt(attNameEnd) != '=' && !isSpace(byteAt(attNameEnd))) {
+				attNameEnd++;
+			}
+			String attName = namePool.intern(decode(pos, attNameEnd));
+			long quote = skipSpace(find("=", attNameEnd, length) + 1, length);
+			long close = find(byteAt(quote) == '"' ? "\"" : "'", quote + 1, length);
+			element.setAttribute(attName, expand(decode(quote + 1, close), true, quote + 1));
+			pos = close + 1;
+		}
+	}
+
+	// position of the '<' of the end tag that closes the element whose content starts at pos
+	private long findEnd(long pos, long end) {
+		long[] starts = new long[16];
+		int depth = 1;
+		while (true) {
+			pos = indexOf('<', pos, end);
+			if (pos == end) {
+				break;
+			}
+			int next = byteAt(pos + 1);
+			if (next == '/') {
+				if (--depth == 0) {
+					return pos;
+				}
+				if (pos - starts[depth] >= REMEMBER_END) {
+					ends.put(starts[depth], pos);
+				}
+				pos = find(">", pos, end) + 1;
+			} else if (next == '?') {
+				pos = find("?>", pos + 2, end) + 2;
+			} else if (startsWith(pos, "<!--")) {
+				pos = find("-->", pos + 4, end) + 3;
+			} else if (startsWith(pos, "<![CDATA[")) {
+				pos = find("]]>", pos + 9, end) + 3;
+			} else {
+				pos = skipTag(pos);
+				if (byteAt(pos - 2) != '/') {
+					if (depth == starts.length) {
+						starts = Arrays.copyOf(starts, depth * 2);
+					}
+					starts[depth++] = pos;
+				}
+			}
+		}
+		throw malformed(end);
+	}
+
+	// returns the position after the '>' that closes a start tag, ignoring quoted values
+	private long skipTag(long pos) {
+		int quote = 0;
+		for (long i = pos + 1; i < length; i++) {
+			int b = byteAt(i);
+			if (quote != 0) {
+				if (b == quote) {
+					quote = 0;
+				}
+			} else if (b == '"' || b == '\'') {
+				quote = b;
+			} else if (b == '>') {
+				return i + 1;
+			}
+		}
+		throw malformed(pos);
+	}
+
+	private long skipDoctype(long pos) {
+		int quote = 0;
+		int brackets = 0;
+		for (long i = pos; i < length; i++) {
+			int b = byteAt(i);
+			if (quote != 0) {
+				if (b == quote) {
+					quote = 0;
+				}
+			} else if (b == '"' || b == '\'') {
+				quote = b;
+			} else if (b == '<' && startsWith(i, "<!--")) {
+				i = find("-->", i + 4, length) + 2;
+			} else if (b == '[') {
+				brackets++;
+			} else if (b == ']') {
+				brackets--;
+			} else if (b == '>' && brackets == 0) {
+				return i + 1;
+			}
+		}
+		throw malformed(pos);
+	}
+
+	private String decode(long from, long to) {
+		byte[] bytes = new byte[(int) (to - from)];
+		for (long i = from; i < to;) {
+			ByteBuffer chunk = chunks[(int) (i >>> CHUNK_BITS)];
+			int offset = (int) (i & (CHUNK_SIZE - 1));
+			int count = (int) Math.min(to - i, (long) chunk.limit() - offset);
+			chunk.get(offset, bytes, (int) (i - from), count);
+			i += count;
+		}
+		String text = new String(bytes, charset);
+		if (text.indexOf('\r') != -1) {
+			text = text.replace("\r\n", "\n").replace('\r', '\n');
+		}
+		return text;
+	}
+
+	private String expand(String text, boolean attribute, long pos) {
+		return expand(text, attribute, pos, 0);
+	}
+
+	// entity values keep the references they contain, so they are expanded in turn
+	private String expand(String text, boolean attribute, long pos, int depth) {
+		if (text.indexOf('&') == -1 && !(attribute && hasWhitespace(text))) {
+			return text;
+		}
+		StringBuilder result = new StringBuilder(text.length());
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			if (attribute && (c == '\n' || c == '\t')) {
+				result.append(' ');
+				continue;
+			}
+			int semicolon = c == '&' ? text.indexOf(';', i) : -1;
+			if (semicolon == -1) {
+				result.append(c);
+				continue;
+			}
+			String reference = text.substring(i + 1, semicolon);
+			String value = resolve(reference);
+			if (value == null && entities != null && entities.containsKey(reference)) {
+				if (depth == MAX_ENTITY_DEPTH) {
+					throw malformed(pos);
+				}
+				value = expand(entities.get(reference), attribute, pos, depth + 1);
+			}
+			if (value == null) {
+				result.append(c);
+				continue;
+			}
+			result.append(value);
+			i = semicolon;
+		}
+		return result.toString();
+	}
+
+	private String resolve(String reference) {
+		switch (reference) {
+			case "lt":
+				return "<";
+			case "gt":
+				return ">";
+			case "amp":
+				return "&";
+			case "apos":
+				return "'";
+			case "quot":
+				return "\"";
+			default:
+				if (reference.startsWith("#")) {
+					try {
+						int code = reference.startsWith("#x") ? Integer.parseInt(reference.substring(2), 16)
+								: Integer.parseInt(reference.substring(1));
+						return new String(Character.toChars(code));
+					} catch (IllegalArgumentException e) {
+						return null;
+					}
+				}
+				return null;
+		}
+	}
+
+	private static boolean hasWhitespace(String text) {
+		return text.indexOf('\n') != -1 || text.indexOf('\t') != -1;
+	}
+
+	private int byteAt(long pos) {
+		return chunks[(int) (pos >>> CHUNK_BITS)].get((int) (pos & (CHUNK_SIZE - 1))) & 0xFF;
+	}
+
+	private boolean startsWith(long pos, byte[] marker) {
+		if (pos + marker.length > length) {
+			return false;
+		}
+		for (int i = 0; i < marker.length; i++) {
+			if (byteAt(pos + i) != (marker[i] & 0xFF)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private boolean startsWith(long pos, String marker) {
+		if (pos + marker.length() > length) {
+			return false;
+		}
+		for (int i = 0; i < marker.length(); i++) {
+			if (byteAt(pos + i) != marker.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private long find(String marker, long from, long end) {
+		int first = marker.charAt(0);
+		for (long i = indexOf(first, from, end); i < end; i = indexOf(first, i + 1, end)) {
+			if (startsWith(i, marker)) {
+				return i;
+			}
+		}
+		throw malformed(from);
+	}
+
+	// scans a chunk at a time; returns end when the byte is not found
+	private long indexOf(int b, long from, long end) {
+		long pos = from;
+		while (pos < end) {
+			ByteBuffer chunk = chunks[(int) (pos >>> CHUNK_BITS)];
+			int offset = (int) (pos & (CHUNK_SIZE - 1));
+			int limit = (int) Math.min(chunk.limit(), offset + (end - pos));
+			for (int i = offset; i < limit; i++) {
+				if (chunk.get(i) == b) {
+					return pos + i - offset;
+				}
+			}
+			pos += limit - offset;
+		}
+		return end;
+	}
+
+	private long findBack(String marker, long from) {
+		int first = marker.charAt(0);
+		for (long i = from; i >= 0; i--) {
+			if (byteAt(i) == first && startsWith(i, marker)) {
+				return i;
+			}
+		}
+		throw malformed(from);
+	}
+
+	private long skipSpace(long pos, long end) {
+		while (pos < end && isSpace(byteAt(pos))) {
+			pos++;
+		}
+		return pos;
+	}
+
+	private static boolean isSpace(int b) {
+		return b == ' ' || b == '\n' || b == '\r' || b == '\t';
+	}
+
+	private MalformedContentException malformed(long pos) {
+		MessageFormat mf = new MessageFormat(Messages.getString("DeferredParser.0"));
+		return new MalformedContentException(mf.format(new String[] { path.toString(), Long.toString(pos) }), path,
+				pos);
+	}
+
+	static class Range {
+
+		private final DeferredParser parser;
+		private final long start;
+		private final long end;
+
+		Range(DeferredParser parser, long start, long end) {
+			this.parser = parser;
+			this.start = start;
+			this.end = end;
+		}
+
+		XMLNode[] load() {
+			return parser.load(start, end);
+		}
+	}
+
+	static class Split {
+
+		private final DeferredParser parser;
+		private final long rootStart;
+		private final long[] tagStarts;
+		private final long[] contentStarts;
+		private final int[] indexes;
+		private final String[] names;
+		private final long[] bounds;
+
+		Split(DeferredParser parser, long rootStart, long[] tagStarts, long[] contentStarts, int[] indexes,
+				String[] names, long[] bounds) {
+			this.parser = parser;
+			this.rootStart = rootStart;
+			this.tagStarts = tagStarts;
+			this.contentStarts = contentStarts;
+			this.indexes = indexes;
+			this.names = names;
+			this.bounds = bounds;
+		}
+
+		int size() {
+			return bounds.length - 1;
+		}
+
+		// the document without the content of the split element
+		ByteBuffer[] skeleton() {
+			List<ByteBuffer> result = new ArrayList<>();
+			parser.slice(0, bounds[0], result);
+			parser.slice(bounds[bounds.length - 1], parser.length, result);
+			return result.toArray(new ByteBuffer[result.size()]);
+		}
+
+		// one part of the content, wrapped in the prolog and the start tags of the split element and its ancestors
+		ByteBuffer[] part(int i) {
+			List<ByteBuffer> result = new ArrayList<>();
+			parser.slice(0, rootStart, result);
+			for (int level = 0; level < tagStarts.length; level++) {
+				parser.slice(tagStarts[level], contentStarts[level], result);
+			}
+			parser.slice(bounds[i], bounds[i + 1], result);
+			StringBuilder endTags = new StringBuilder();
+			for (int level = names.length - 1; level >= 0; level--) {
+				endTags.append("</").append(names[level]).append('>');
+			}
+			result.add(ByteBuffer.wrap(endTags.toString().getBytes(parser.charset)));
+			return result.toArray(new ByteBuffer[result.size()]);
+		}
+
+		// position of the split element among the element children of each of its ancestors
+		int[] getPath() {
+			return Arrays.copyOfRange(indexes, 1, indexes.length);
+		}
+	}
+}
@@ -10,11 +10,16 @@
 package com.maxprograms.xml;
 
 import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.OutputStream;
 import java.lang.System.Logger;
 import java.lang.System.Logger.Level;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -31,7 +36,9 @@ public class Document implements XMLNode {
 	private Charset encoding;
 	private Map<String, String> entities;
 	private List<AttlistDecl> attlistDeclarations;
-
+	private boolean frozen;
+	// id attributes of the index a frozen document rebuilds after deserialization
+	private String[] indexAttributes;
 
 	private static Logger logger = System.getLogger(Document.class.getName());
 
@@ -106,11 +113,26 @@ public class Document implements XMLNode {
 		}
 	}
 
+	Document(List<XMLNode> content) {
+		this.content = content;
+		for (XMLNode node : content) {
+			if (node.getNodeType() == XMLNode.ELEMENT_NODE) {
+				root = (Element) node;
+			}
+		}
+	}
+
 	public Element getRootElement() {
 		return root;
 	}
 
 	public void setRootElement(Element e) {
+		checkMutable();
+		ElementIndex index = root != null ? root.getIndex() : null;
+		if (index != null) {
+			// the old root leaves the document, so its elements stop updating the index
+			index.removeTree(root);
+		}
 		for (int i = 0; i < content.size(); i++) {
 			XMLNode node = content.get(i);
 			if (node.getNodeType() == XMLNode.ELEMENT_NODE) {
@@ -118,6 +140,115 @@ public class Document implements XMLNode {
 				content.set(i, e);
 			}
 		}
+		if (index != null && root != null && root.getIndex() == null) {
+			createIndex(index.getIdAttributes());
+		}
+	}
+
+	public synchronized ElementIndex createIndex(String... idAttributes) {
+		checkMutable();
+		return buildIndex(idAttributes);
+	}
+
+	private ElementIndex buildIndex(String... idAttributes) {
+		return new ElementIndex(root, idAttributes.length > 0 ? idAttributes : ElementIndex.DEFAULT_ID_ATTRIBUTES);
+	}
+
+	public ElementIndex getIndex() {
+		return root != null ? root.getIndex() : null;
+	}
+
+	public void dropIndex() {
+		checkMutable();
+		ElementIndex index = getIndex();
+		if (index != null) {
+			index.removeTree(root);
+		}
+	}
+
+	public Element getElementById(String id) {
+		ElementIndex index = index();
+		return index != null ? index.getElementById(id) : null;
+	}
+
+	public List<Element> getElementsByName(String name) {
+		ElementIndex index = index();
+		return index != null ? index.getElementsByName(name) : new ArrayList<>();
+	}
+
+	// returns an immutable copy that threads can read without locking
+	public Document freeze() {
+		if (frozen) {
+			return this;
+		}
+		XMLNode[] nodes = new XMLNode[content.size()];
+		for (int i = 0; i < nodes.length; i++) {
+			XMLNode node = content.get(i);
+			switch (node.getNodeType()) {
+				case XMLNode.ELEMENT_NODE:
+					nodes[i] = ((Element) node).freeze();
+					break;
+				case XMLNode.PROCESSING_INSTRUCTION_NODE:
+					nodes[i] = new PI(((PI) node).getTarget(), ((PI) node).getData());
+					break;
+				case XMLNode.COMMENT_NODE:
+					nodes[i] = new Comment(((Comment) node).getText());
+					break;
+				case XMLNode.TEXT_NODE:
+					nodes[i] = new TextNode(((TextNode) node).getText());
+					break;
+				default:
+					nodes[i] = node;
+			}
+			Element.freezeNode(nodes[i]);
+		}
+		Document snapshot = new Document(Collections.unmodifiableList(Arrays.asList(nodes)));
+		snapshot.systemId = systemId;
+		snapshot.publicId = publicId;
+		snapshot.internalSubset = internalSubset;
+		snapshot.encoding = encoding;
+		if (entities != null) {
+			snapshot.entities = Collections.unmodifiableMap(new HashMap<>(entities));
+		}
+		if (attlistDeclarations != null) {
+			snapshot.attlistDeclarations = Collections.unmodifiableList(new ArrayList<>(attlistDeclarations));
+		}
+		// built now, so lookups on the snapshot never write to it
+		ElementIndex index = getIndex();
+		snapshot.indexAttributes = index != null ? index.getIdAttributes() : ElementIndex.DEFAULT_ID_ATTRIBUTES;
+		if (snapshot.root != null) {
+			snapshot.buildIndex(snapshot.indexAttributes);
+		}
+		snapshot.frozen = true;
+		return snapshot;
+	}
+
+	public boolean isFrozen() {
+		return frozen;
+	}
+
+	private void checkMutable() {
+		if (frozen) {
+			throw new UnsupportedOperationException(Messages.getString("Document.1"));
+		}
+	}
+
+	// the index is built under the lock and published through the root, so lookups can run in parallel;
+	// they cannot run while the tree is being changed
+	private ElementIndex index() {
+		if (root == null) {
+			return null;
+		}
+		ElementIndex index = root.getIndex();
+		if (index == null && !frozen) {
+			synchronized (this) {
+				index = root.getIndex();
+				if (index == null) {
+					index = buildIndex();
+				}
+			}
+		}
+		return index;
 	}
 
 	public String getSystemId() {
@@ -125,6 +256,7 @@ public class Document implements XMLNode {
 	}
 
 	public void setSystemId(String id) {
+		checkMutable();
 		systemId = id;
 	}
 
@@ -133,10 +265,12 @@ public class Document implements XMLNode {
 	}
 
 	public void setPublicId(String id) {
+		checkMutable();
 		publicId = id;
 	}
 
 	public void setDocType(String publicId, String systemId) {
+		checkMutable();
 		this.publicId = publicId;
 		this.systemId = systemId;
 	}
@@ -173,6 +307,7 @@ public class Document implements XMLNode {
 	}
 
 	public void removePI(String target) {
+		checkMutable();
 		for (int i = 0; i < content.size(); i++) {
 			XMLNode node = content.get(i);
 			if (node.getNodeType() == XMLNode.PROCESSING_INSTRUCTION_NODE && ((PI) node).getTarget().equals(target)) {
@@ -182,6 +317,7 @@ public class Document implements XMLNode {
 	}
 
 	public void removeAllPI() {
+		checkMutable();
 		for (int i = 0; i < content.size(); i++) {
 			XMLNode node = content.get(i);
 			if (node.getNodeType() == XMLNode.PROCESSING_INSTRUCTION_NODE) {
@@ -191,6 +327,7 @@ public class Document implements XMLNode {
 	}
 
 	public void addPI(PI pi) {
+		checkMutable();
 		content.add(pi);
 	}
 
@@ -199,6 +336,7 @@ public class Document implements XMLNode {
 	}
 
 	public void setDefaultNamespace(String namespaceURI) {
+		checkMutable();
 		String prfx = lookupPrefix(namespaceURI);
 		if (prfx != null) {
 			root.removeAttribute("xmlns:" + prfx);
@@ -220,13 +358,11 @@ public class Document implements XMLNode {
 	}
 
 	public Charset getEncoding() {
-		if (encoding == null) {
-			encoding = StandardCharsets.UTF_8;
-		}
-		return encoding;
+		return encoding != null ? encoding : StandardCharsets.UTF_8;
 	}
 
 	public void setEncoding(String value) {
+		checkMutable();
 		encoding = Charset.forName(value);
 	}
 
@@ -247,10 +383,12 @@ public class Document implements XMLNode {
 	}
 
 	public void addContent(XMLNode node) {
+		checkMutable();
 		content.add(node);
 	}
 
 	protected void setProlog(List<XMLNode> prolog) {
+		checkMutable();
 		Iterator<XMLNode> it = prolog.iterator();
 		while (it.hasNext()) {
 			XMLNode node = it.next();
@@ -269,6 +407,7 @@ public class Document implements XMLNode {
 	}
 
 	public void setEntities(Map<String, String> table) {
+		checkMutable();
 		entities = table;
 	}
 
@@ -284,6 +423,7 @@ public class Document implements XMLNode {
 	}
 
 	public void setInternalSubset(String value) {
+		checkMutable();
 		internalSubset = value;
 	}
 
@@ -292,7 +432,25 @@ public class Document implements XMLNode {
 		return toString().hashCode();
 	}
 
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		if (frozen) {
+			// the frozen state of the nodes is not serialized
+			for (XMLNode node : content) {
+				if (node.getNodeType() == XMLNode.ELEMENT_NODE) {
+					((Element) node).freezeTree();
+				} else {
+					Element.freezeNode(node);
+				}
+			}
+			if (root != null) {
+				buildIndex(indexAttributes != null ? indexAttributes : ElementIndex.DEFAULT_ID_ATTRIBUTES);
+			}
+		}
+	}
+
     public void setAttlistDeclarations(List<AttlistDecl> attlistDeclarations) {
+        checkMutable();
         this.attlistDeclarations = attlistDeclarations;
     }
 
@@ -10,127 +10,580 @@
 package com.maxprograms.xml;
 
 import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.OutputStream;
+import java.io.Serializable;
+import java.lang.ref.WeakReference;
 import java.lang.System.Logger;
 import java.lang.System.Logger.Level;
 import java.nio.charset.Charset;
-import java.util.Collections;
+import java.util.AbstractList;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Hashtable;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.Objects;
+import java.util.RandomAccess;
 import java.util.Vector;
+import java.util.function.Predicate;
 
 public class Element implements XMLNode {
 
 	private static final long serialVersionUID = 3004362075586010085L;
 
+	private static final ObjectStreamField[] serialPersistentFields = {
+			new ObjectStreamField("name", String.class),
+			new ObjectStreamField("content", List.class),
+			new ObjectStreamField("attsTable", Map.class) };
+
 	private String name;
-	private List<XMLNode> content;
-	private Map<String, Attribute> attsTable;
+	private ContentList content;
+	private Attribute[] attributes;
+	private int attributeCount;
+
+	// cached structural hash, 0 until computed
+	private transient volatile int hash;
+	private transient Element parent;
+	private transient int position;
+	private transient boolean frozen;
+	// set on every element at or below one with clones; elsewhere mutations skip the walk
+	private transient boolean cowTree;
+	// state most elements never use, allocated when first needed
+	private transient volatile Extras extras;
 
 	private static Logger logger = System.getLogger(Element.class.getName());
 
 	public Element() {
 		name = "";
-		attsTable = new Hashtable<>();
-		content = new Vector<>();
 	}
 
 	public Element(String name) {
 		this.name = name;
-		attsTable = new Hashtable<>();
-		content = new Vector<>();
+	}
+
+	private List<XMLNode> contentList() {
+		Extras x = extras;
+		if (x != null) {
+			if (x.deferred != null) {
+				loadDeferred();
+			}
+			if (x.cowSource != null) {
+				copyContent();
+			}
+		}
+		if (content == null) {
+			checkMutable();
+			content = new ContentList(this, 4);
+		}
+		return content;
+	}
+
+	int contentSize() {
+		Extras x = extras;
+		if (x != null) {
+			if (x.deferred != null) {
+				loadDeferred();
+			}
+			if (x.cowSource != null) {
+				copyContent();
+			}
+		}
+		return content == null ? 0 : content.size;
+	}
+
+	private synchronized void loadDeferred() {
+		DeferredParser.Range range = extras.deferred;
+		if (range == null) {
+			return;
+		}
+		XMLNode[] nodes = range.load();
+		if (nodes.length > 0) {
+			content = new ContentList(this, nodes);
+		}
+		extras.deferred = null;
+	}
+
+	void setDeferred(DeferredParser.Range range) {
+		extras().deferred = range;
+	}
+
+	private Extras extras() {
+		Extras x = extras;
+		if (x == null) {
+			x = new Extras();
+			extras = x;
+		}
+		return x;
+	}
+
+	private Object containers() {
+		Extras x = extras;
+		return x != null ? x.containers : null;
+	}
+
+	private void setContainers(Object group) {
+		if (group != null || extras != null) {
+			extras().containers = group;
+		}
+	}
+
+	private Element cowSource() {
+		Extras x = extras;
+		return x != null ? x.cowSource : null;
+	}
+
+	private List<WeakReference<Element>> cowCopies() {
+		Extras x = extras;
+		return x != null ? x.cowCopies : null;
+	}
+
+	XMLNode contentNode(int i) {
+		return content.nodes[i];
 	}
 
 	public void addContent(XMLNode n) {
-		content.add(n);
+		contentList().add(n);
 	}
 
 	public void addContent(Element e) {
-		content.add(e);
+		contentList().add(e);
 	}
 
 	public void addContent(Comment c) {
-		content.add(c);
+		contentList().add(c);
 	}
 
 	public void addContent(PI pi) {
-		content.add(pi);
+		contentList().add(pi);
 	}
 
 	public void addContent(CData c) {
-		content.add(c);
+		contentList().add(c);
 	}
 
 	public void addContent(String text) {
-		content.add(new TextNode(text));
+		contentList().add(new TextNode(text));
 	}
 
 	public void addContent(TextNode text) {
-		content.add(text);
+		contentList().add(text);
 	}
 
 	public void clone(Element src) {
+		Element target = this;
+		TreeWalker.walk(src, new ITreeVisitor<RuntimeException>() {
+
+			private Element current;
+
+			@Override
+			public boolean startElement(Element element) {
+				Element copy = current == null ? target : new Element();
+				copy.copyNameAndAttributes(element);
+				if (current != null) {
+					current.addContent(copy);
+				}
+				current = copy;
+				return true;
+			}
+
+			@Override
+			public void endElement(Element element) {
+				current = current == target ? null : current.parent;
+			}
+
+			@Override
+			public void visit(XMLNode node) {
+				switch (node.getNodeType()) {
+					case XMLNode.TEXT_NODE:
+						current.addContent(new TextNode(((TextNode) node).getText()));
+						break;
+					case XMLNode.PROCESSING_INSTRUCTION_NODE:
+						current.addContent(new PI(((PI) node).getTarget(), ((PI) node).getData()));
+						break;
+					case XMLNode.COMMENT_NODE:
+						current.addContent(new Comment(((Comment) node).getText()));
+						break;
+					case XMLNode.CDATA_SECTION_NODE:
+						current.addContent(new CData(((CData) node).getData()));
+						break;
+					default:
+						// should never happen
+						logger.log(Level.WARNING, Messages.getString("Element.0"));
+				}
+			}
+		});
+	}
+
+	private void copyNameAndAttributes(Element src) {
+		beforeChange();
+		dropSource();
+		invalidateHash();
+		ElementIndex idx = findIndex();
+		if (idx != null) {
+			idx.remove(this);
+		}
 		name = src.getName();
-		attsTable = new Hashtable<>();
-		List<Attribute> atts = src.getAttributes();
-		Iterator<Attribute> it = atts.iterator();
-		while (it.hasNext()) {
-			Attribute a = it.next();
-			Attribute n = new Attribute(a.getName(), a.getValue());
-			attsTable.put(n.getName(), n);
-		}
-		content = new Vector<>();
-		List<XMLNode> cont = src.getContent();
-		Iterator<XMLNode> ic = cont.iterator();
-		while (ic.hasNext()) {
-			XMLNode node = ic.next();
+		releaseAttributes();
+		if (extras != null) {
+			extras.deferred = null;
+		}
+		copyAttributes(src);
+		if (content != null) {
+			content.clear();
+			content = null;
+		}
+		if (idx != null) {
+			idx.add(this);
+		}
+	}
+
+	private void copyAttributes(Element src) {
+		if (src.attributeCount > 0) {
+			attributes = new Attribute[src.attributeCount];
+			for (int i = 0; i < src.attributeCount; i++) {
+				Attribute a = src.attributes[i];
+				attributes[i] = new Attribute(a.getName(), a.getValue());
+				attributes[i].addOwner(this);
+			}
+			attributeCount = src.attributeCount;
+		}
+	}
+
+	private void releaseAttributes() {
+		for (int i = 0; i < attributeCount; i++) {
+			attributes[i].removeOwner(this);
+		}
+		attributes = null;
+		attributeCount = 0;
+	}
+
+	public void lazyClone(Element src) {
+		copyNameAndAttributes(src);
+		extras().cowSource = src;
+		if (src.frozen) {
+			// a frozen source never changes, so the clone needs no tracking
+			return;
+		}
+		src.addCopy(this);
+	}
+
+	private synchronized void addCopy(Element copy) {
+		Extras x = extras();
+		if (x.cowCopies == null) {
+			x.cowCopies = new ArrayList<>(2);
+		} else {
+			// clones dropped without being read or written leave cleared references behind
+			x.cowCopies.removeIf(ref -> ref.get() == null);
+		}
+		x.cowCopies.add(new WeakReference<>(copy));
+		markCowTree();
+	}
+
+	private synchronized List<WeakReference<Element>> takeCopies() {
+		Extras x = extras;
+		if (x == null) {
+			return null;
+		}
+		List<WeakReference<Element>> copies = x.cowCopies;
+		x.cowCopies = null;
+		return copies;
+	}
+
+	// an element below a marked one is always marked, so the walk stops at marked elements
+	private void markCowTree() {
+		if (cowTree) {
+			return;
+		}
+		ArrayDeque<Element> stack = new ArrayDeque<>();
+		stack.push(this);
+		while (!stack.isEmpty()) {
+			Element e = stack.pop();
+			e.cowTree = true;
+			// content that is not loaded or copied yet is marked when it is adopted
+			ContentList list = e.content;
+			for (int i = 0; list != null && i < list.size; i++) {
+				if (list.nodes[i] instanceof Element child && !child.cowTree) {
+					stack.push(child);
+				}
+			}
+		}
+	}
+
+	// no clone reads the path to the root after copyClones(), so the marks are dropped from the top down;
+	// elements with more than one container keep theirs, as the other paths were not checked
+	private void clearCowTree() {
+		List<Element> path = new ArrayList<>();
+		for (Element e = this; e != null; e = e.parent) {
+			path.add(e);
+		}
+		for (int i = path.size() - 1; i >= 0; i--) {
+			Element e = path.get(i);
+			if (e.cowCopies() != null || e.containers() != null) {
+				return;
+			}
+			e.cowTree = false;
+		}
+	}
+
+	private void dropSource() {
+		Element src = cowSource();
+		if (src == null) {
+			return;
+		}
+		if (!src.frozen) {
+			synchronized (src) {
+				List<WeakReference<Element>> copies = src.cowCopies();
+				if (copies != null) {
+					copies.removeIf(ref -> ref.get() == null || ref.get() == this);
+					if (copies.isEmpty()) {
+						src.extras.cowCopies = null;
+					}
+				}
+			}
+		}
+		extras.cowSource = null;
+	}
+
+	// copies one level of the source; child elements become copy-on-write clones of the source's children
+	private synchronized void copyContent() {
+		Element src = cowSource();
+		if (src == null) {
+			return;
+		}
+		int size = src.contentSize();
+		if (size == 0) {
+			dropSource();
+			return;
+		}
+		XMLNode[] nodes = new XMLNode[size];
+		for (int i = 0; i < size; i++) {
+			XMLNode node = src.contentNode(i);
+			if (node == null) {
+				continue;
+			}
 			switch (node.getNodeType()) {
-				case XMLNode.TEXT_NODE:
-					content.add(new TextNode(((TextNode) node).getText()));
-					break;
 				case XMLNode.ELEMENT_NODE:
-					Element e = new Element();
-					e.clone((Element) node);
-					content.add(e);
+					Element child = (Element) node;
+					Element copy = new Element(child.name);
+					copy.copyAttributes(child);
+					copy.extras().cowSource = child;
+					if (!child.frozen) {
+						child.addCopy(copy);
+					}
+					nodes[i] = copy;
+					break;
+				case XMLNode.TEXT_NODE:
+					nodes[i] = new TextNode(((TextNode) node).getText());
 					break;
 				case XMLNode.PROCESSING_INSTRUCTION_NODE:
-					content.add(new PI(((PI) node).getTarget(), ((PI) node).getData()));
+					nodes[i] = new PI(((PI) node).getTarget(), ((PI) node).getData());
 					break;
 				case XMLNode.COMMENT_NODE:
-					content.add(new Comment(((Comment) node).getText()));
+					nodes[i] = new Comment(((Comment) node).getText());
 					break;
 				case XMLNode.CDATA_SECTION_NODE:
-					content.add(new CData(((CData) node).getData()));
+					nodes[i] = new CData(((CData) node).getData());
 					break;
 				default:
 					// should never happen
 					logger.log(Level.WARNING, Messages.getString("Element.0"));
 			}
 		}
+		content = new ContentList(this, nodes);
+		dropSource();
+	}
+
+	// clones sharing content with this element or its containers copy the path down to it before it changes
+	private void beforeChange() {
+		checkMutable();
+		if (cowTree) {
+			copyClones(new ArrayList<>());
+			clearCowTree();
+		}
+	}
+
+	// path holds the elements below this one, from the changing element up
+	private void copyClones(List<Element> path) {
+		int depth = path.size();
+		for (Element e = this; e != null; e = e.parent) {
+			if (e.cowCopies() != null) {
+				List<WeakReference<Element>> copies = e.takeCopies();
+				if (copies != null) {
+					for (WeakReference<Element> ref : copies) {
+						Element copy = ref.get();
+						if (copy != null && copy.cowSource() == e) {
+							copy.copyPath(path);
+						}
+					}
+				}
+			}
+			path.add(e);
+			if (e.containers() != null) {
+				for (Element other : Containers.toArray(e.containers())) {
+					if (other != e.parent) {
+						other.copyClones(path);
+					}
+				}
+			}
+		}
+		path.subList(depth, path.size()).clear();
+	}
+
+	// copies one level at a time down the path; the branches left aside stay lazy
+	private void copyPath(List<Element> path) {
+		Element clone = this;
+		for (int i = path.size() - 1;; i--) {
+			Element src = clone.cowSource();
+			if (src == null) {
+				// copied before: its children track their own clones
+				return;
+			}
+			int position = i >= 0 ? src.positionOf(path.get(i)) : -1;
+			clone.copyContent();
+			if (position == -1 || clone.content == null || position >= clone.content.size
+					|| !(clone.content.nodes[position] instanceof Element child)) {
+				return;
+			}
+			clone = child;
+		}
+	}
+
+	private int positionOf(Element child) {
+		if (child.parent == this) {
+			return child.indexInParent();
+		}
+		for (int i = 0; i < contentSize(); i++) {
+			if (content.nodes[i] == child) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private void checkMutable() {
+		if (frozen) {
+			throw new UnsupportedOperationException(Messages.getString("XMLNode.0"));
+		}
+	}
+
+	public boolean isFrozen() {
+		return frozen;
+	}
+
+	// returns an immutable copy with merged text, trimmed arrays and precomputed hashes
+	public Element freeze() {
+		if (frozen) {
+			return this;
+		}
+		Element copy = new Element();
+		copy.clone(this);
+		copy.freezeTree();
+		return copy;
+	}
+
+	void freezeTree() {
+		TreeWalker.walk(this, new ITreeVisitor<RuntimeException>() {
+
+			@Override
+			public void endElement(Element element) {
+				if (element.content != null && element.content.size == 0) {
+					element.content = null;
+				} else if (element.content != null) {
+					element.content.trim();
+				}
+				if (element.attributes != null) {
+					if (element.attributes.length != element.attributeCount) {
+						element.attributes = Arrays.copyOf(element.attributes, element.attributeCount);
+					}
+					for (int i = 0; i < element.attributeCount; i++) {
+						element.attributes[i].freeze();
+					}
+				}
+				element.computeHash();
+				element.frozen = true;
+			}
+
+			@Override
+			public void visit(XMLNode node) {
+				freezeNode(node);
+			}
+		});
+	}
+
+	static void freezeNode(XMLNode node) {
+		switch (node.getNodeType()) {
+			case XMLNode.TEXT_NODE:
+				((TextNode) node).freeze();
+				break;
+			case XMLNode.PROCESSING_INSTRUCTION_NODE:
+				((PI) node).freeze();
+				break;
+			case XMLNode.COMMENT_NODE:
+				((Comment) node).freeze();
+				break;
+			default:
+				// CData has no setters
+		}
+	}
+
+	// texts, comments and PIs reach their containers through their owners, so only clones on those paths are copied
+	static void contentChanging(Object owners) {
+		for (Element owner : Containers.toArray(owners)) {
+			owner.beforeChange();
+			owner.invalidateHash();
+		}
+	}
+
+	static void attributeChanging(Attribute a, Object owners, String value) {
+		for (Element owner : Containers.toArray(owners)) {
+			owner.beforeChange();
+			ElementIndex idx = owner.getIndex();
+			if (idx != null && idx.isIdAttribute(a.getName())) {
+				idx.idChanged(owner, a.getValue(), value);
+			}
+			owner.invalidateHash();
+		}
 	}
 
 	@Override
 	public boolean equals(Object obj) {
-		if (obj == null) {
-			return false;
+		if (this == obj) {
+			return true;
 		}
 		if (!(obj instanceof Element)) {
 			return false;
 		}
-		Element s = (Element) obj;
-		if (!name.equals(s.getName())) {
+		// pairs of elements still to compare, kept on a stack so depth is not limited
+		ArrayDeque<Element> pending = new ArrayDeque<>();
+		pending.push(this);
+		pending.push((Element) obj);
+		while (!pending.isEmpty()) {
+			Element s = pending.pop();
+			Element e = pending.pop();
+			if (e != s && !(e.sameHead(s) && e.sameContent(s, pending))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private boolean sameHead(Element s) {
+		if (attributeCount != s.attributeCount || !name.equals(s.name)) {
 			return false;
 		}
-		if (attsTable.size() != s.attsTable.size()) {
+		int cached = hash;
+		int otherHash = s.hash;
+		if (cached != 0 && otherHash != 0 && cached != otherHash) {
 			return false;
 		}
-		Set<String> keys = attsTable.keySet();
-		Iterator<String> it = keys.iterator();
-		while (it.hasNext()) {
-			Attribute a = attsTable.get(it.next());
+		for (int i = 0; i < attributeCount; i++) {
+			Attribute a = attributes[i];
 			Attribute b = s.getAttribute(a.getName());
 			if (b == null) {
 				return false;
@@ -139,16 +592,116 @@ public class Element implements XMLNode {
 				return false;
 			}
 		}
-		mergeText();
-		s.mergeText();
-		return content.equals(s.getContent());
+		return true;
+	}
+
+	// compares content as if both lists had gone through mergeText(), without modifying them
+	private boolean sameContent(Element s, ArrayDeque<Element> pending) {
+		int size = contentSize();
+		int otherSize = s.contentSize();
+		int i = skipNulls(content, 0, size);
+		int j = skipNulls(s.content, 0, otherSize);
+		while (i < size && j < otherSize) {
+			XMLNode a = content.get(i);
+			XMLNode b = s.content.get(j);
+			if (a.getNodeType() == XMLNode.TEXT_NODE) {
+				if (b.getNodeType() != XMLNode.TEXT_NODE) {
+					return false;
+				}
+				int iEnd = textRunEnd(content, i, size);
+				int jEnd = textRunEnd(s.content, j, otherSize);
+				if (!sameText(content, i, iEnd, s.content, j, jEnd)) {
+					return false;
+				}
+				i = iEnd;
+				j = jEnd;
+			} else {
+				if (a.getNodeType() == XMLNode.ELEMENT_NODE && b.getNodeType() == XMLNode.ELEMENT_NODE) {
+					pending.push((Element) a);
+					pending.push((Element) b);
+				} else if (!a.equals(b)) {
+					return false;
+				}
+				i = skipNulls(content, i + 1, size);
+				j = skipNulls(s.content, j + 1, otherSize);
+			}
+		}
+		return i == size && j == otherSize;
+	}
+
+	private static int skipNulls(List<XMLNode> list, int from, int size) {
+		while (from < size && list.get(from) == null) {
+			from++;
+		}
+		return from;
+	}
+
+	private static int textRunEnd(List<XMLNode> list, int from, int size) {
+		while (from < size && (list.get(from) == null || list.get(from).getNodeType() == XMLNode.TEXT_NODE)) {
+			from++;
+		}
+		return from;
+	}
+
+	private static String textAt(List<XMLNode> list, int index) {
+		XMLNode node = list.get(index);
+		return node == null ? "" : ((TextNode) node).getText();
+	}
+
+	private static boolean sameText(List<XMLNode> a, int i, int iEnd, List<XMLNode> b, int j, int jEnd) {
+		if (iEnd - i == 1 && jEnd - j == 1) {
+			return textAt(a, i).equals(textAt(b, j));
+		}
+		String x = "";
+		String y = "";
+		int xOffset = 0;
+		int yOffset = 0;
+		while (true) {
+			while (xOffset == x.length() && i < iEnd) {
+				x = textAt(a, i++);
+				xOffset = 0;
+			}
+			while (yOffset == y.length() && j < jEnd) {
+				y = textAt(b, j++);
+				yOffset = 0;
+			}
+			boolean xDone = xOffset == x.length();
+			boolean yDone = yOffset == y.length();
+			if (xDone || yDone) {
+				return xDone && yDone;
+			}
+			int length = Math.min(x.length() - xOffset, y.length() - yOffset);
+			if (!x.regionMatches(xOffset, y, yOffset, length)) {
+				return false;
+			}
+			xOffset += length;
+			yOffset += length;
+		}
 	}
 
 	private void mergeText() {
-		if (content.size() < 2) {
+		if (contentSize() < 2) {
+			return;
+		}
+		boolean merge = false;
+		boolean previousText = false;
+		for (int i = 0; i < content.size(); i++) {
+			XMLNode n = content.get(i);
+			if (n == null) {
+				merge = true;
+				break;
+			}
+			boolean isText = n.getNodeType() == XMLNode.TEXT_NODE;
+			if (isText && previousText) {
+				merge = true;
+				break;
+			}
+			previousText = isText;
+		}
+		if (!merge) {
 			return;
 		}
-		List<XMLNode> newContent = new Vector<>();
+		List<XMLNode> newContent = new ArrayList<>(content.size());
 		for (int i = 0; i < content.size(); i++) {
 			XMLNode n = content.get(i);
 			if (n == null) {
@@ -173,35 +726,60 @@ public class Element implements XMLNode {
 				newContent.add(n);
 			}
 		}
-		content = newContent;
+		content.replaceNodes(newContent.toArray(new XMLNode[newContent.size()]));
+	}
+
+	private int indexOfAttribute(String attributeName) {
+		for (int i = 0; i < attributeCount; i++) {
+			if (attributes[i].getName().equals(attributeName)) {
+				return i;
+			}
+		}
+		return -1;
 	}
 
 	public Attribute getAttribute(String attributeName) {
-		return attsTable.get(attributeName);
+		int index = indexOfAttribute(attributeName);
+		return index != -1 ? attributes[index] : null;
+	}
+
+	// used by decoders on elements that are not attached yet
+	void initAttributes(Attribute[] array) {
+		attributes = array;
+		attributeCount = array.length;
+		for (Attribute a : array) {
+			a.addOwner(this);
+		}
 	}
 
 	public List<Attribute> getAttributes() {
-		List<Attribute> result = new Vector<>();
-		result.addAll(attsTable.values());
+		List<Attribute> result = new ArrayList<>(attributeCount);
+		for (int i = 0; i < attributeCount; i++) {
+			result.add(attributes[i]);
+		}
 		return result;
 	}
 
+	public int getAttributeCount() {
+		return attributeCount;
+	}
+
 	public String getAttributeValue(String attributeName) {
-		Attribute a = attsTable.get(attributeName);
+		Attribute a = getAttribute(attributeName);
 		return a != null ? a.getValue() : "";
 	}
 
 	public boolean hasAttribute(String attributeName) {
-		return attsTable.containsKey(attributeName);
+		return indexOfAttribute(attributeName) != -1;
 	}
 
 	public String getAttributeValue(String attributeName, String defaultValue) {
-		Attribute a = attsTable.get(attributeName);
+		Attribute a = getAttribute(attributeName);
 		return a != null ? a.getValue() : defaultValue;
 	}
 
 	public Element getChild(String tagName) {
-		for (int i = 0; i < content.size(); i++) {
+		for (int i = 0; i < contentSize(); i++) {
 			XMLNode node = content.get(i);
 			if (node.getNodeType() == XMLNode.ELEMENT_NODE && ((Element) node).getName().equals(tagName)) {
 				return (Element) node;
@@ -211,8 +789,8 @@ public class Element implements XMLNode {
 	}
 
 	public List<Element> getChildren() {
-		List<Element> result = new Vector<>();
-		for (int i = 0; i < content.size(); i++) {
+		List<Element> result = new ArrayList<>();
+		for (int i = 0; i < contentSize(); i++) {
 			XMLNode node = content.get(i);
 			if (node.getNodeType() == XMLNode.ELEMENT_NODE) {
 				result.add((Element) node);
@@ -222,8 +800,8 @@ public class Element implements XMLNode {
 	}
 
 	public List<Element> getChildren(String tagname) {
-		List<Element> result = new Vector<>();
-		for (int i = 0; i < content.size(); i++) {
+		List<Element> result = new ArrayList<>();
+		for (int i = 0; i < contentSize(); i++) {
 			XMLNode node = content.get(i);
 			if (node.getNodeType() == XMLNode.ELEMENT_NODE && ((Element) node).getName().equals(tagname)) {
 				result.add((Element) node);
@@ -233,14 +811,59 @@ public class Element implements XMLNode {
 	}
 
 	public List<XMLNode> getContent() {
+		if (frozen) {
+			// text was merged when the element was frozen
+			return content != null ? content : List.of();
+		}
 		mergeText();
-		return content;
+		return contentList();
 	}
 
 	public String getName() {
 		return name;
 	}
 
+	public Element getParent() {
+		return parent;
+	}
+
+	public int indexInParent() {
+		if (parent == null) {
+			return -1;
+		}
+		ContentList siblings = parent.content;
+		if (siblings == null) {
+			return -1;
+		}
+		if (position < siblings.size && siblings.nodes[position] == this) {
+			return position;
+		}
+		// elements added to more than one container keep the last one as parent
+		for (int i = 0; i < siblings.size; i++) {
+			if (siblings.nodes[i] == this) {
+				position = i;
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	public XMLNode nextSibling() {
+		int i = indexInParent();
+		if (i == -1 || i + 1 >= parent.content.size) {
+			return null;
+		}
+		return parent.content.nodes[i + 1];
+	}
+
+	public XMLNode previousSibling() {
+		int i = indexInParent();
+		if (i < 1) {
+			return null;
+		}
+		return parent.content.nodes[i - 1];
+	}
+
 	public String getLocalName() {
 		if (name.indexOf(':') == -1) {
 			return name;
@@ -261,16 +884,16 @@ public class Element implements XMLNode {
 	}
 
 	public String getText() {
-		StringBuilder result = new StringBuilder("");
-		for (int i = 0; i < content.size(); i++) {
-			XMLNode node = content.get(i);
-			if (node.getNodeType() == XMLNode.TEXT_NODE) {
-				result.append(((TextNode) node).getText());
-			}
-			if (node.getNodeType() == XMLNode.ELEMENT_NODE) {
-				result.append(((Element) node).getText());
+		StringBuilder result = new StringBuilder();
+		TreeWalker.walk(this, new ITreeVisitor<RuntimeException>() {
+
+			@Override
+			public void visit(XMLNode node) {
+				if (node.getNodeType() == XMLNode.TEXT_NODE) {
+					result.append(((TextNode) node).getText());
+				}
 			}
-		}
+		});
 		return result.toString();
 	}
 
@@ -281,67 +904,130 @@ public class Element implements XMLNode {
 	}
 
 	public void removeAttribute(String attributeName) {
-		attsTable.remove(attributeName);
+		int index = indexOfAttribute(attributeName);
+		if (index != -1) {
+			beforeChange();
+			ElementIndex idx = findIndex();
+			if (idx != null && idx.isIdAttribute(attributeName)) {
+				idx.idChanged(this, attributes[index].getValue(), null);
+			}
+			attributes[index].removeOwner(this);
+			attributeCount--;
+			System.arraycopy(attributes, index + 1, attributes, index, attributeCount - index);
+			attributes[attributeCount] = null;
+			invalidateHash();
+		}
 	}
 
 	public void removeChild(String string) {
-		List<XMLNode> newContent = new Vector<>();
-		for (int i = 0; i < content.size(); i++) {
-			XMLNode node = content.get(i);
-			if (node.getNodeType() == XMLNode.ELEMENT_NODE) {
-				Element e = (Element) node;
-				if (string.equals(e.getName())) {
-					continue;
-				}
-			}
-			newContent.add(node);
+		if (contentSize() > 0) {
+			content.removeIf(node -> node instanceof Element e && string.equals(e.getName()));
 		}
-		content = newContent;
 	}
 
 	public void removeChild(Element child) {
-		List<XMLNode> newContent = new Vector<>();
-		for (int i = 0; i < content.size(); i++) {
-			XMLNode node = content.get(i);
-			if (node.getNodeType() == XMLNode.ELEMENT_NODE) {
-				Element e = (Element) node;
-				if (child.equals(e)) {
-					continue;
+		if (contentSize() > 0) {
+			content.removeIf(node -> node instanceof Element e && child.equals(e));
+		}
+	}
+
+	public boolean removeContent(XMLNode node) {
+		if (contentSize() == 0) {
+			return false;
+		}
+		int i = node instanceof Element e && e.parent == this ? e.indexInParent() : -1;
+		if (i == -1) {
+			for (int j = 0; j < content.size; j++) {
+				if (content.nodes[j] == node) {
+					i = j;
+					break;
 				}
 			}
-			newContent.add(node);
+			if (i == -1) {
+				return false;
+			}
+		}
+		content.remove(i);
+		return true;
+	}
+
+	public XMLNode removeContent(int index) {
+		return contentList().remove(index);
+	}
+
+	public boolean removeIf(Predicate<? super XMLNode> filter) {
+		return contentSize() > 0 && content.removeIf(filter);
+	}
+
+	void detachLastChild(Element child) {
+		int last = contentSize() - 1;
+		if (last >= 0 && content.get(last) == child) {
+			content.remove(last--);
+			while (last >= 0 && content.get(last) instanceof TextNode text && text.getText().isBlank()) {
+				content.remove(last--);
+			}
 		}
-		content = newContent;
 	}
 
 	public void setAttribute(String attributeName, String value) {
-		Attribute a = new Attribute(attributeName, value);
-		attsTable.put(attributeName, a);
+		setAttribute(new Attribute(attributeName, value));
 	}
 
 	public void setAttribute(Attribute a) {
-		attsTable.put(a.getName(), a);
+		beforeChange();
+		invalidateHash();
+		int index = indexOfAttribute(a.getName());
+		ElementIndex idx = findIndex();
+		if (idx != null && idx.isIdAttribute(a.getName())) {
+			idx.idChanged(this, index != -1 ? attributes[index].getValue() : null, a.getValue());
+		}
+		a.addOwner(this);
+		if (index != -1) {
+			attributes[index].removeOwner(this);
+			attributes[index] = a;
+			return;
+		}
+		if (attributes == null) {
+			attributes = new Attribute[2];
+		} else if (attributeCount == attributes.length) {
+			attributes = Arrays.copyOf(attributes, attributeCount * 2);
+		}
+		attributes[attributeCount++] = a;
 	}
 
+	// the nodes are copied from c, so later changes to c are not seen by this element
 	public void setContent(List<XMLNode> c) {
-		content = c;
+		beforeChange();
+		dropSource();
+		XMLNode[] nodes = c != null ? c.toArray(new XMLNode[c.size()]) : new XMLNode[0];
+		if (extras != null) {
+			extras.deferred = null;
+		}
+		if (content != null) {
+			content.clear();
+		}
+		content = nodes.length > 0 ? new ContentList(this, nodes) : null;
+		invalidateHash();
 	}
 
 	public void setText(String text) {
-		content.clear();
+		contentList().clear();
 		content.add(new TextNode(text));
 	}
 
+	private Attribute[] sortedAttributes() {
+		Attribute[] sorted = Arrays.copyOf(attributes, attributeCount);
+		Arrays.sort(sorted);
+		return sorted;
+	}
+
 	public String getHead() {
 		StringBuilder result = new StringBuilder("<" + name);
-		List<String> keys = new Vector<>();
-		keys.addAll(attsTable.keySet());
-		Collections.sort(keys);
-		Iterator<String> it = keys.iterator();
-		while (it.hasNext()) {
-			Attribute a = attsTable.get(it.next());
-			result.append(' ');
-			result.append(a.toString());
+		if (attributeCount > 0) {
+			for (Attribute a : sortedAttributes()) {
+				result.append(' ');
+				result.append(a.toString());
+			}
 		}
 		result.append(">");
 		return result.toString();
@@ -353,33 +1039,45 @@ public class Element implements XMLNode {
 
 	@Override
 	public String toString() {
-		StringBuilder result = new StringBuilder("<" + name);
-		List<String> keys = new Vector<>();
-		keys.addAll(attsTable.keySet());
-		Collections.sort(keys);
-		Iterator<String> it = keys.iterator();
-		while (it.hasNext()) {
-			Attribute a = attsTable.get(it.next());
-			result.append(' ');
-			result.append(a.toString());
-		}
-		if (content.isEmpty()) {
-			result.append("/>");
-			return result.toString();
-		}
-		result.append(">");
-		for (int i = 0; i < content.size(); i++) {
-			result.append(content.get(i).toString());
-		}
-		result.append("</");
-		result.append(name);
-		result.append(">");
+		StringBuilder result = new StringBuilder();
+		TreeWalker.walk(this, new ITreeVisitor<RuntimeException>() {
+
+			@Override
+			public boolean startElement(Element element) {
+				result.append('<');
+				result.append(element.name);
+				if (element.attributeCount > 0) {
+					for (Attribute a : element.sortedAttributes()) {
+						result.append(' ');
+						result.append(a.toString());
+					}
+				}
+				if (element.contentSize() == 0) {
+					result.append("/>");
+					return false;
+				}
+				result.append('>');
+				return true;
+			}
+
+			@Override
+			public void endElement(Element element) {
+				result.append("</");
+				result.append(element.name);
+				result.append('>');
+			}
+
+			@Override
+			public void visit(XMLNode node) {
+				result.append(node.toString());
+			}
+		});
 		return result.toString();
 	}
 
 	public List<PI> getPI() {
-		List<PI> result = new Vector<>();
-		for (int i = 0; i < content.size(); i++) {
+		List<PI> result = new ArrayList<>();
+		for (int i = 0; i < contentSize(); i++) {
 			XMLNode n = content.get(i);
 			if (n.getNodeType() == XMLNode.PROCESSING_INSTRUCTION_NODE) {
 				result.add((PI) n);
@@ -389,8 +1087,8 @@ public class Element implements XMLNode {
 	}
 
 	public List<PI> getPI(String target) {
-		List<PI> result = new Vector<>();
-		for (int i = 0; i < content.size(); i++) {
+		List<PI> result = new ArrayList<>();
+		for (int i = 0; i < contentSize(); i++) {
 			XMLNode n = content.get(i);
 			if (n.getNodeType() == XMLNode.PROCESSING_INSTRUCTION_NODE && ((PI) n).getTarget().equals(target)) {
 				result.add((PI) n);
@@ -400,18 +1098,9 @@ public class Element implements XMLNode {
 	}
 
 	public void removePI(String string) {
-		List<XMLNode> newContent = new Vector<>();
-		for (int i = 0; i < content.size(); i++) {
-			XMLNode node = content.get(i);
-			if (node.getNodeType() == XMLNode.PROCESSING_INSTRUCTION_NODE) {
-				PI pi = (PI) node;
-				if (string.equals(pi.getTarget())) {
-					continue;
-				}
-			}
-			newContent.add(node);
+		if (contentSize() > 0) {
+			content.removeIf(node -> node instanceof PI pi && string.equals(pi.getTarget()));
 		}
-		content = newContent;
 	}
 
 	public String getPrefix() {
@@ -423,16 +1112,31 @@ public class Element implements XMLNode {
 	}
 
 	public void setPrefix(String prfx) {
+		beforeChange();
+		ElementIndex idx = findIndex();
+		if (idx != null) {
+			idx.remove(this);
+		}
 		String[] parts = name.split(":");
 		if (parts.length == 2) {
 			name = prfx + ':' + parts[1];
 		} else {
 			name = prfx + ":" + name;
 		}
+		invalidateHash();
+		if (idx != null) {
+			idx.add(this);
+		}
 	}
 
 	public void setAttributes(List<Attribute> list) {
-		attsTable.clear();
+		beforeChange();
+		ElementIndex idx = findIndex();
+		if (idx != null) {
+			idx.removeIds(this);
+		}
+		releaseAttributes();
+		invalidateHash();
 		Iterator<Attribute> it = list.iterator();
 		while (it.hasNext()) {
 			Attribute a = it.next();
@@ -441,7 +1145,7 @@ public class Element implements XMLNode {
 	}
 
 	public void setChildren(List<Element> c) {
-		content.clear();
+		contentList().clear();
 		content.addAll(c);
 	}
 
@@ -452,11 +1156,408 @@ public class Element implements XMLNode {
 
 	@Override
 	public int hashCode() {
-		return toString().hashCode();
+		int cached = hash;
+		if (cached != 0) {
+			return cached;
+		}
+		// children are hashed first, so computeHash() only reads cached values
+		TreeWalker.walk(this, new ITreeVisitor<RuntimeException>() {
+
+			@Override
+			public boolean startElement(Element element) {
+				return element.hash == 0;
+			}
+
+			@Override
+			public void endElement(Element element) {
+				element.computeHash();
+			}
+		});
+		return hash;
+	}
+
+	private void computeHash() {
+		int h = name.hashCode();
+		int atts = 0;
+		for (int i = 0; i < attributeCount; i++) {
+			atts += attributes[i].hashCode();
+		}
+		h = 31 * h + atts;
+		boolean inText = false;
+		int textHash = 0;
+		for (int i = 0; i < contentSize(); i++) {
+			XMLNode node = content.get(i);
+			if (node == null) {
+				continue;
+			}
+			if (node.getNodeType() == XMLNode.TEXT_NODE) {
+				// adjacent text nodes hash as the single node mergeText() would produce
+				String text = ((TextNode) node).getText();
+				textHash = inText ? textHash * pow31(text.length()) + text.hashCode() : text.hashCode();
+				inText = true;
+				continue;
+			}
+			if (inText) {
+				h = 31 * (31 * h + XMLNode.TEXT_NODE) + textHash;
+				inText = false;
+			}
+			h = 31 * (31 * h + node.getNodeType()) + node.hashCode();
+		}
+		if (inText) {
+			h = 31 * (31 * h + XMLNode.TEXT_NODE) + textHash;
+		}
+		if (h == 0) {
+			h = 1;
+		}
+		hash = h;
+	}
+
+	private static int pow31(int n) {
+		int result = 1;
+		int base = 31;
+		while (n > 0) {
+			if ((n & 1) != 0) {
+				result *= base;
+			}
+			base *= base;
+			n >>= 1;
+		}
+		return result;
+	}
+
+	// a cached hash implies cached hashes below it, so the walk stops at the first element without one
+	private void invalidateHash() {
+		for (Element e = this; e != null && e.hash != 0; e = e.parent) {
+			e.hash = 0;
+			if (e.containers() != null) {
+				for (Element other : Containers.toArray(e.containers())) {
+					if (other != e.parent) {
+						other.invalidateHash();
+					}
+				}
+			}
+		}
+	}
+
+	private ElementIndex findIndex() {
+		return getIndex();
+	}
+
+	ElementIndex getIndex() {
+		Extras x = extras;
+		return x != null ? x.index : null;
+	}
+
+	void setIndex(ElementIndex value) {
+		if (value != null || extras != null) {
+			extras().index = value;
+		}
+	}
+
+	int getIndexSlot() {
+		Extras x = extras;
+		return x != null ? x.indexSlot : 0;
+	}
+
+	void setIndexSlot(int slot) {
+		extras().indexSlot = slot;
 	}
 
 	public void addContent(List<XMLNode> list) {
-		content.addAll(list);
+		contentList().addAll(list);
+	}
+
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		contentSize();
+		Map<String, Attribute> attsTable = new Hashtable<>();
+		for (int i = 0; i < attributeCount; i++) {
+			attsTable.put(attributes[i].getName(), attributes[i]);
+		}
+		ObjectOutputStream.PutField fields = out.putFields();
+		fields.put("name", name);
+		fields.put("content", content != null ? new Vector<>(content) : new Vector<>());
+		fields.put("attsTable", attsTable);
+		out.writeFields();
 	}
 
+	@SuppressWarnings("unchecked")
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		ObjectInputStream.GetField fields = in.readFields();
+		name = (String) fields.get("name", "");
+		List<XMLNode> list = (List<XMLNode>) fields.get("content", null);
+		content = list != null && !list.isEmpty() ? new ContentList(this, list.toArray(new XMLNode[list.size()])) : null;
+		Map<String, Attribute> attsTable = (Map<String, Attribute>) fields.get("attsTable", null);
+		if (attsTable != null && !attsTable.isEmpty()) {
+			initAttributes(attsTable.values().toArray(new Attribute[attsTable.size()]));
+		}
+	}
+
+	private static final class Extras {
+
+		// every container of an element added to more than one, held weakly; null while parent is the only one
+		Object containers;
+		// the index of the tree, set on every element of an indexed tree so mutations find it without a walk
+		volatile ElementIndex index;
+		int indexSlot;
+		// content of a deferred document that has not been read from the file yet
+		volatile DeferredParser.Range deferred;
+		// copy-on-write clones: cowSource is the element whose content this one has not copied yet,
+		// cowCopies the clones still reading this element's content
+		volatile Element cowSource;
+		volatile List<WeakReference<Element>> cowCopies;
+	}
+
+	private static class ContentList extends AbstractList<XMLNode> implements RandomAccess, Serializable {
+
+		private static final long serialVersionUID = -2262307011395815271L;
+
+		private final transient Element owner;
+		private transient XMLNode[] nodes;
+		private transient int size;
+
+		ContentList(Element owner, int capacity) {
+			this.owner = owner;
+			nodes = new XMLNode[Math.max(capacity, 1)];
+		}
+
+		ContentList(Element owner, XMLNode[] array) {
+			this.owner = owner;
+			nodes = array;
+			size = array.length;
+			for (int i = 0; i < size; i++) {
+				adopt(array[i], i);
+			}
+		}
+
+		private void adopt(XMLNode node, int position) {
+			if (node instanceof Element e) {
+				ElementIndex index = owner.getIndex();
+				if (e.parent != null) {
+					Object group = e.containers();
+					e.setContainers(Containers.add(group != null ? group : e.parent, owner));
+				} else if (e.getIndex() != null && e.getIndex() != index) {
+					// an indexed tree added to another one loses its own index
+					e.getIndex().removeTree(e);
+				}
+				e.parent = owner;
+				e.position = position;
+				if (owner.cowTree) {
+					e.markCowTree();
+				}
+				if (index != null) {
+					index.addTree(e);
+				}
+			} else if (node instanceof TextNode text) {
+				text.addOwner(owner);
+			} else if (node instanceof Comment comment) {
+				comment.addOwner(owner);
+			} else if (node instanceof PI pi) {
+				pi.addOwner(owner);
+			}
+		}
+
+		private void reindex(int from) {
+			for (int i = from; i < size; i++) {
+				if (nodes[i] instanceof Element e && e.parent == owner) {
+					e.position = i;
+				}
+			}
+		}
+
+		private void release(XMLNode node) {
+			if (node instanceof Element e) {
+				ElementIndex index = owner.getIndex();
+				if (index != null) {
+					index.removeTree(e);
+				}
+				Object group = e.containers();
+				if (group == null) {
+					if (e.parent == owner) {
+						e.parent = null;
+					}
+				} else {
+					Object rest = Containers.remove(group, owner);
+					Element[] live = Containers.toArray(rest);
+					if (e.parent == owner) {
+						// the most recent container left becomes the parent
+						e.parent = live.length > 0 ? live[live.length - 1] : null;
+					}
+					e.setContainers(live.length > 1 ? rest : null);
+				}
+			} else if (node instanceof TextNode text) {
+				text.removeOwner(owner);
+			} else if (node instanceof Comment comment) {
+				comment.removeOwner(owner);
+			} else if (node instanceof PI pi) {
+				pi.removeOwner(owner);
+			}
+		}
+
+		private void ensureCapacity(int capacity) {
+			if (capacity > nodes.length) {
+				nodes = Arrays.copyOf(nodes, Math.max(capacity, nodes.length * 2));
+			}
+		}
+
+		void trim() {
+			if (nodes.length != size) {
+				nodes = Arrays.copyOf(nodes, size);
+			}
+		}
+
+		// the new nodes keep the order of the old ones, so the dropped ones are found in one pass
+		void replaceNodes(XMLNode[] array) {
+			owner.beforeChange();
+			int kept = 0;
+			for (int i = 0; i < size; i++) {
+				if (kept < array.length && nodes[i] == array[kept]) {
+					kept++;
+				} else {
+					release(nodes[i]);
+				}
+			}
+			nodes = array;
+			size = array.length;
+			reindex(0);
+			modCount++;
+			owner.invalidateHash();
+		}
+
+		@Override
+		public XMLNode get(int index) {
+			Objects.checkIndex(index, size);
+			return nodes[index];
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+
+		@Override
+		public XMLNode set(int index, XMLNode node) {
+			owner.beforeChange();
+			Objects.checkIndex(index, size);
+			XMLNode old = nodes[index];
+			release(old);
+			adopt(node, index);
+			nodes[index] = node;
+			owner.invalidateHash();
+			return old;
+		}
+
+		@Override
+		public void add(int index, XMLNode node) {
+			owner.beforeChange();
+			Objects.checkIndex(index, size + 1);
+			ensureCapacity(size + 1);
+			System.arraycopy(nodes, index, nodes, index + 1, size - index);
+			adopt(node, index);
+			nodes[index] = node;
+			size++;
+			reindex(index + 1);
+			modCount++;
+			owner.invalidateHash();
+		}
+
+		@Override
+		public boolean add(XMLNode node) {
+			owner.beforeChange();
+			ensureCapacity(size + 1);
+			adopt(node, size);
+			nodes[size++] = node;
+			modCount++;
+			owner.invalidateHash();
+			return true;
+		}
+
+		@Override
+		public boolean addAll(Collection<? extends XMLNode> c) {
+			Object[] array = c.toArray();
+			if (array.length == 0) {
+				return false;
+			}
+			owner.beforeChange();
+			ensureCapacity(size + array.length);
+			for (Object o : array) {
+				XMLNode node = (XMLNode) o;
+				adopt(node, size);
+				nodes[size++] = node;
+			}
+			modCount++;
+			owner.invalidateHash();
+			return true;
+		}
+
+		@Override
+		public XMLNode remove(int index) {
+			owner.beforeChange();
+			Objects.checkIndex(index, size);
+			XMLNode old = nodes[index];
+			System.arraycopy(nodes, index + 1, nodes, index, size - index - 1);
+			nodes[--size] = null;
+			release(old);
+			reindex(index);
+			modCount++;
+			owner.invalidateHash();
+			return old;
+		}
+
+		@Override
+		protected void removeRange(int fromIndex, int toIndex) {
+			if (fromIndex >= toIndex) {
+				return;
+			}
+			owner.beforeChange();
+			for (int i = fromIndex; i < toIndex; i++) {
+				release(nodes[i]);
+			}
+			System.arraycopy(nodes, toIndex, nodes, fromIndex, size - toIndex);
+			int newSize = size - (toIndex - fromIndex);
+			Arrays.fill(nodes, newSize, size, null);
+			size = newSize;
+			reindex(fromIndex);
+			modCount++;
+			owner.invalidateHash();
+		}
+
+		@Override
+		public void clear() {
+			removeRange(0, size);
+		}
+
+		@Override
+		public boolean removeIf(Predicate<? super XMLNode> filter) {
+			boolean[] removed = new boolean[size];
+			boolean found = false;
+			for (int i = 0; i < size; i++) {
+				if (filter.test(nodes[i])) {
+					removed[i] = true;
+					found = true;
+				}
+			}
+			if (!found) {
+				return false;
+			}
+			owner.beforeChange();
+			int kept = 0;
+			for (int i = 0; i < size; i++) {
+				if (removed[i]) {
+					release(nodes[i]);
+				} else {
+					nodes[kept++] = nodes[i];
+				}
+			}
+			Arrays.fill(nodes, kept, size, null);
+			size = kept;
+			reindex(0);
+			modCount++;
+			owner.invalidateHash();
+			return true;
+		}
+
+		private Object writeReplace() {
+			return new ArrayList<>(this);
+		}
+	}
 }
@@ -0,0 +1,79 @@
+/*******************************************************************************
+ * Copyright (c) 2022-2026 Maxprograms. All rights reserved.
+ *
+ * This software is the proprietary property of Maxprograms.
+ * Use, modification, and distribution are subject to the terms of the 
+ * Software License Agreement found in the root of this distribution 
+ *
+ * Unauthorized redistribution or commercial use is strictly prohibited.
+ *******************************************************************************/
+package com.maxprograms.xml;
+
+import java.util.Arrays;
+
+// a small ordered group of elements kept in one field: null, a single Element or an Element[]
+final class ElementGroup {
+
+	private ElementGroup() {
+		// do not instantiate
+	}
+
+	static Object add(Object group, Element e) {
+		if (group == null) {
+			return e;
+		}
+		if (group instanceof Element first) {
+			return new Element[] { first, e };
+		}
+		Element[] array = (Element[]) group;
+		Element[] result = Arrays.copyOf(array, array.length + 1);
+		result[array.length] = e;
+		return result;
+	}
+
+	// removes one occurrence of the element
+	static Object remove(Object group, Element e) {
+		if (group == e) {
+			return null;
+		}
+		if (group instanceof Element[] array) {
+			for (int i = 0; i < array.length; i++) {
+				if (array[i] == e) {
+					if (array.length == 2) {
+						return array[1 - i];
+					}
+					Element[] result = new Element[array.length - 1];
+					System.arraycopy(array, 0, result, 0, i);
+					System.arraycopy(array, i + 1, result, i, array.length - i - 1);
+					return result;
+				}
+			}
+		}
+		return group;
+	}
+
+	static Element first(Object group) {
+		if (group instanceof Element[] array) {
+			return array[0];
+		}
+		return (Element) group;
+	}
+
+	static Element last(Object group) {
+		if (group instanceof Element[] array) {
+			return array[array.length - 1];
+		}
+		return (Element) group;
+	}
+
+	// arrays are replaced, never modified, so the result can be iterated while the group changes
+	static Element[] toArray(Object group) {
+		if (group == null) {
+			return new Element[0];
+		}
+		if (group instanceof Element e) {
+			return new Element[] { e };
+		}
+		return (Element[]) group;
+	}
+}
@@ -0,0 +1,211 @@
+/*******************************************************************************
+ * Copyright (c) 2022-2026 Maxprograms. All rights reserved.
+ *
+ * This software is the proprietary property of Maxprograms.
+ * Use, modification, and distribution are subject to the terms of the 
+ * Software License Agreement found in the root of this distribution 
+ *
+ * Unauthorized redistribution or commercial use is strictly prohibited.
+ *******************************************************************************/
+package com.maxprograms.xml;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class ElementIndex {
+
+	public static final String[] DEFAULT_ID_ATTRIBUTES = { "id", "xml:id" };
+
+	private final String[] idAttributes;
+	// each value holds the elements with that id, in the order they were added
+	private final Map<String, Object> ids;
+	private final Map<String, NameList> names;
+
+	ElementIndex(Element root, String[] idAttributes) {
+		this.idAttributes = idAttributes.clone();
+		ids = new HashMap<>();
+		names = new HashMap<>();
+		TreeWalker.walk(root, new ITreeVisitor<RuntimeException>() {
+
+			@Override
+			public boolean startElement(Element element) {
+				if (element == root) {
+					addEntries(element);
+				} else {
+					add(element);
+				}
+				return true;
+			}
+		});
+		// set last, so a reader that finds the index on the root finds it complete
+		root.setIndex(this);
+	}
+
+	public Element getElementById(String id) {
+		Object group = ids.get(id);
+		return group != null ? ElementGroup.first(group) : null;
+	}
+
+	public List<Element> getElementsByName(String name) {
+		NameList list = names.get(name);
+		if (list == null) {
+			return new ArrayList<>();
+		}
+		List<Element> result = new ArrayList<>(list.live);
+		for (int i = 0; i < list.size; i++) {
+			if (list.elements[i] != null) {
+				result.add(list.elements[i]);
+			}
+		}
+		return result;
+	}
+
+	public String[] getIdAttributes() {
+		return idAttributes.clone();
+	}
+
+	boolean isIdAttribute(String attributeName) {
+		for (String id : idAttributes) {
+			if (id.equals(attributeName)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	void addTree(Element e) {
+		TreeWalker.walk(e, new ITreeVisitor<RuntimeException>() {
+
+			@Override
+			public boolean startElement(Element element) {
+				add(element);
+				return true;
+			}
+		});
+	}
+
+	void removeTree(Element e) {
+		TreeWalker.walk(e, new ITreeVisitor<RuntimeException>() {
+
+			@Override
+			public boolean startElement(Element element) {
+				remove(element);
+				return true;
+			}
+		});
+	}
+
+	void add(Element e) {
+		e.setIndex(this);
+		addEntries(e);
+	}
+
+	private void addEntries(Element e) {
+		addIds(e);
+		names.computeIfAbsent(e.getName(), k -> new NameList()).add(e);
+	}
+
+	void addIds(Element e) {
+		for (String id : idAttributes) {
+			Attribute a = e.getAttribute(id);
+			if (a != null) {
+				addId(a.getValue(), e);
+			}
+		}
+	}
+
+	void removeIds(Element e) {
+		for (String id : idAttributes) {
+			Attribute a = e.getAttribute(id);
+			if (a != null) {
+				removeId(a.getValue(), e);
+			}
+		}
+	}
+
+	void remove(Element e) {
+		if (e.getIndex() == this) {
+			e.setIndex(null);
+		}
+		removeIds(e);
+		NameList list = names.get(e.getName());
+		if (list != null && list.remove(e) && list.live == 0) {
+			names.remove(e.getName());
+		}
+	}
+
+	void idChanged(Element e, String oldValue, String newValue) {
+		if (oldValue != null) {
+			removeId(oldValue, e);
+		}
+		if (newValue != null) {
+			addId(newValue, e);
+		}
+	}
+
+	private void addId(String value, Element e) {
+		ids.compute(value, (k, group) -> ElementGroup.add(group, e));
+	}
+
+	private void removeId(String value, Element e) {
+		ids.computeIfPresent(value, (k, group) -> ElementGroup.remove(group, e));
+	}
+
+	// elements in insertion order; removed entries are nulled and compacted once they are the majority
+	private static class NameList {
+
+		Element[] elements = new Element[4];
+		int size;
+		int live;
+
+		void add(Element e) {
+			if (size == elements.length) {
+				compact();
+				if (size == elements.length) {
+					elements = Arrays.copyOf(elements, size * 2);
+				}
+			}
+			e.setIndexSlot(size);
+			elements[size++] = e;
+			live++;
+		}
+
+		boolean remove(Element e) {
+			int slot = e.getIndexSlot();
+			if (slot < 0 || slot >= size || elements[slot] != e) {
+				slot = -1;
+				for (int i = 0; i < size; i++) {
+					if (elements[i] == e) {
+						slot = i;
+						break;
+					}
+				}
+				if (slot == -1) {
+					return false;
+				}
+			}
+			elements[slot] = null;
+			live--;
+			if (live < size / 2) {
+				compact();
+			}
+			return true;
+		}
+
+		private void compact() {
+			int kept = 0;
+			for (int i = 0; i < size; i++) {
+				Element e = elements[i];
+				if (e != null) {
+					e.setIndexSlot(kept);
+					elements[kept++] = e;
+				}
+			}
+			Arrays.fill(elements, kept, size, null);
+			size = kept;
+		}
+	}
+}
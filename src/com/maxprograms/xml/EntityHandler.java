@@ -21,6 +21,7 @@ public class EntityHandler extends DefaultHandler2 {
 
 	private Map<String, String> entities;
 	private List<AttlistDecl> attlistDeclarations;
+	private boolean attributeDefaults;
 
 	public EntityHandler() {
 		super();
@@ -53,6 +54,9 @@ public class EntityHandler extends DefaultHandler2 {
 	@Override
 	public void attributeDecl(String element, String attribute, String type, String mode, String value)
 			throws SAXException {
+		if (value != null) {
+			attributeDefaults = true;
+		}
 		if (attribute.indexOf(':') != -1 || attribute.startsWith("xml:") || mode == null || type == null) {
 			return;
 		}
@@ -84,4 +88,9 @@ public class EntityHandler extends DefaultHandler2 {
 	public List<AttlistDecl> getAttlistDeclarations() {
 		return attlistDeclarations;
 	}
+
+	// true when any declaration, including those skipped above, gives a default or fixed value
+	public boolean hasAttributeDefaults() {
+		return attributeDefaults;
+	}
 }
\ No newline at end of file
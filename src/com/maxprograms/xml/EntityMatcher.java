@@ -0,0 +1,122 @@
+/*******************************************************************************
+ * Copyright (c) 2022-2026 Maxprograms. All rights reserved.
+ *
+ * This software is the proprietary property of Maxprograms.
+ * Use, modification, and distribution are subject to the terms of the 
+ * Software License Agreement found in the root of this distribution 
+ *
+ * Unauthorized redistribution or commercial use is strictly prohibited.
+ *******************************************************************************/
+package com.maxprograms.xml;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+public class EntityMatcher {
+
+	private static final char[] NO_KEYS = new char[0];
+	private static final Node[] NO_NODES = new Node[0];
+
+	private Node root;
+	private int patterns;
+
+	private static class Node {
+		char[] keys = NO_KEYS;
+		Node[] children = NO_NODES;
+		String reference;
+		int length;
+
+		Node child(char c) {
+			int index = Arrays.binarySearch(keys, c);
+			return index >= 0 ? children[index] : null;
+		}
+
+		Node add(char c) {
+			int index = Arrays.binarySearch(keys, c);
+			if (index >= 0) {
+				return children[index];
+			}
+			int position = -index - 1;
+			char[] newKeys = new char[keys.length + 1];
+			Node[] newChildren = new Node[children.length + 1];
+			System.arraycopy(keys, 0, newKeys, 0, position);
+			System.arraycopy(children, 0, newChildren, 0, position);
+			newKeys[position] = c;
+			newChildren[position] = new Node();
+			System.arraycopy(keys, position, newKeys, position + 1, keys.length - position);
+			System.arraycopy(children, position, newChildren, position + 1, children.length - position);
+			keys = newKeys;
+			children = newChildren;
+			return newChildren[position];
+		}
+	}
+
+	public EntityMatcher(Map<String, String> entities) {
+		root = new Node();
+		Set<String> keys = entities.keySet();
+		Iterator<String> it = keys.iterator();
+		while (it.hasNext()) {
+			String key = it.next();
+			String value = entities.get(key);
+			if (isReplaceable(key, value)) {
+				add(value, "&" + key + ";");
+			}
+		}
+	}
+
+	private static boolean isReplaceable(String key, String value) {
+		if (value.isEmpty() || key.equals("amp") || key.equals("lt") || key.equals("gt") || key.equals("quot")) {
+			return false;
+		}
+		// markup characters are always escaped and never match declared text
+		return value.indexOf('&') == -1 && value.indexOf('<') == -1 && value.indexOf('>') == -1;
+	}
+
+	private void add(String value, String reference) {
+		Node node = root;
+		for (int i = 0; i < value.length(); i++) {
+			node = node.add(value.charAt(i));
+		}
+		if (node.reference == null) {
+			patterns++;
+		}
+		if (node.reference == null || reference.compareTo(node.reference) < 0) {
+			node.reference = reference;
+			node.length = value.length();
+		}
+	}
+
+	public boolean isEmpty() {
+		return patterns == 0;
+	}
+
+	public int size() {
+		return patterns;
+	}
+
+	public int match(String text, int offset) {
+		Node node = root;
+		int longest = 0;
+		int length = text.length();
+		for (int i = offset; i < length; i++) {
+			node = node.child(text.charAt(i));
+			if (node == null) {
+				break;
+			}
+			if (node.reference != null) {
+				longest = node.length;
+			}
+		}
+		return longest;
+	}
+
+	public String getReference(String text, int offset, int length) {
+		Node node = root;
+		for (int i = offset; i < offset + length; i++) {
+			node = node.child(text.charAt(i));
+		}
+		return node.reference;
+	}
+}
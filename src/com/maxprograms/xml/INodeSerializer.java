@@ -0,0 +1,40 @@
+/*******************************************************************************
+ * Copyright (c) 2022-2026 Maxprograms. All rights reserved.
+ *
+ * This software is the proprietary property of Maxprograms.
+ * Use, modification, and distribution are subject to the terms of the 
+ * Software License Agreement found in the root of this distribution 
+ *
+ * Unauthorized redistribution or commercial use is strictly prohibited.
+ *******************************************************************************/
+package com.maxprograms.xml;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+public interface INodeSerializer<T extends XMLNode> {
+
+	byte[] toBytes(T node);
+
+	T fromBytes(byte[] data) throws IOException;
+
+	// stream form for stores such as MapDB that hand out DataOutput/DataInput; the length is written first
+	default void serialize(DataOutput output, T node) throws IOException {
+		byte[] data = toBytes(node);
+		output.writeInt(data.length);
+		output.write(data);
+	}
+
+	// available is the size of the stored record when the store knows it, negative otherwise;
+	// a length the record cannot hold means corrupt data and is rejected before allocating
+	default T deserialize(DataInput input, int available) throws IOException {
+		int length = input.readInt();
+		if (length < 0 || available >= 0 && length > available - 4) {
+			throw new IOException(Messages.getString("BinaryCodec.0"));
+		}
+		byte[] data = new byte[length];
+		input.readFully(data);
+		return fromBytes(data);
+	}
+}
@@ -0,0 +1,27 @@
+/*******************************************************************************
+ * Copyright (c) 2022-2026 Maxprograms. All rights reserved.
+ *
+ * This software is the proprietary property of Maxprograms.
+ * Use, modification, and distribution are subject to the terms of the 
+ * Software License Agreement found in the root of this distribution 
+ *
+ * Unauthorized redistribution or commercial use is strictly prohibited.
+ *******************************************************************************/
+package com.maxprograms.xml;
+
+public interface ITreeVisitor<X extends Exception> {
+
+	// return false to skip the element's content; endElement is then not called for it
+	default boolean startElement(Element element) throws X {
+		return true;
+	}
+
+	default void endElement(Element element) throws X {
+		// nothing to do by default
+	}
+
+	default void visit(XMLNode node) throws X {
+		// nothing to do by default
+	}
+
+}
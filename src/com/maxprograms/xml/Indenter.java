@@ -35,19 +35,25 @@ public class Indenter {
 	}
 
 	private static void recurse(Element e) {
-		if ("preserve".equals(e.getAttributeValue("xml:space"))) {
-			return;
-		}
-		if (!hasText(e)) {
-			indent(e);
-		}
-		level++;
-		List<Element> children = e.getChildren();
-		Iterator<Element> it = children.iterator();
-		while (it.hasNext()) {
-			recurse(it.next());
-		}
-		level--;
+		TreeWalker.walk(e, new ITreeVisitor<RuntimeException>() {
+
+			@Override
+			public boolean startElement(Element element) {
+				if ("preserve".equals(element.getAttributeValue("xml:space"))) {
+					return false;
+				}
+				if (!hasText(element)) {
+					indent(element);
+				}
+				level++;
+				return true;
+			}
+
+			@Override
+			public void endElement(Element element) {
+				level--;
+			}
+		});
 	}
 
 	private static void indent(Element e) {
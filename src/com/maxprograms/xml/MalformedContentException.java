@@ -0,0 +1,35 @@
+/*******************************************************************************
+ * Copyright (c) 2022-2026 Maxprograms. All rights reserved.
+ *
+ * This software is the proprietary property of Maxprograms.
+ * Use, modification, and distribution are subject to the terms of the 
+ * Software License Agreement found in the root of this distribution 
+ *
+ * Unauthorized redistribution or commercial use is strictly prohibited.
+ *******************************************************************************/
+package com.maxprograms.xml;
+
+import java.nio.file.Path;
+
+// thrown when deferred content turns out to be broken while it is read on demand
+public class MalformedContentException extends IllegalStateException {
+
+	private static final long serialVersionUID = 2417013562097842315L;
+
+	private final transient Path path;
+	private final long offset;
+
+	public MalformedContentException(String message, Path path, long offset) {
+		super(message);
+		this.path = path;
+		this.offset = offset;
+	}
+
+	public Path getPath() {
+		return path;
+	}
+
+	public long getOffset() {
+		return offset;
+	}
+}
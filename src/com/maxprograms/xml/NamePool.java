@@ -0,0 +1,56 @@
+/*******************************************************************************
+ * Copyright (c) 2022-2026 Maxprograms. All rights reserved.
+ *
+ * This software is the proprietary property of Maxprograms.
+ * Use, modification, and distribution are subject to the terms of the 
+ * Software License Agreement found in the root of this distribution 
+ *
+ * Unauthorized redistribution or commercial use is strictly prohibited.
+ *******************************************************************************/
+package com.maxprograms.xml;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+public class NamePool {
+
+	public static final int DEFAULT_CAPACITY = 4096;
+
+	private final ConcurrentHashMap<String, String> names;
+	private final int capacity;
+
+	public NamePool() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	public NamePool(int capacity) {
+		this.capacity = capacity;
+		names = new ConcurrentHashMap<>();
+	}
+
+	public String intern(String name) {
+		if (name == null) {
+			return null;
+		}
+		String result = names.get(name);
+		if (result != null) {
+			return result;
+		}
+		if (names.mappingCount() >= capacity) {
+			return name;
+		}
+		result = names.putIfAbsent(name, name);
+		return result != null ? result : name;
+	}
+
+	public int size() {
+		return names.size();
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	public void clear() {
+		names.clear();
+	}
+}
@@ -0,0 +1,102 @@
+/*******************************************************************************
+ * Copyright (c) 2022-2026 Maxprograms. All rights reserved.
+ *
+ * This software is the proprietary property of Maxprograms.
+ * Use, modification, and distribution are subject to the terms of the 
+ * Software License Agreement found in the root of this distribution 
+ *
+ * Unauthorized redistribution or commercial use is strictly prohibited.
+ *******************************************************************************/
+package com.maxprograms.xml;
+
+import java.io.IOException;
+
+public class NodeSerializers {
+
+	public static final ElementSerializer ELEMENT = new ElementSerializer();
+
+	public static final INodeSerializer<Document> DOCUMENT = new INodeSerializer<>() {
+
+		@Override
+		public byte[] toBytes(Document node) {
+			return BinaryCodec.encode(node);
+		}
+
+		@Override
+		public Document fromBytes(byte[] data) throws IOException {
+			return BinaryCodec.decodeDocument(data);
+		}
+	};
+
+	public static final INodeSerializer<TextNode> TEXT = new LeafSerializer<>(TextNode.class);
+	public static final INodeSerializer<Comment> COMMENT = new LeafSerializer<>(Comment.class);
+	public static final INodeSerializer<PI> PI = new LeafSerializer<>(PI.class);
+	public static final INodeSerializer<CData> CDATA = new LeafSerializer<>(CData.class);
+
+	// any node type; the encoded form records which one it is
+	public static final INodeSerializer<XMLNode> NODE = new INodeSerializer<>() {
+
+		@Override
+		public byte[] toBytes(XMLNode node) {
+			return BinaryCodec.encode(node);
+		}
+
+		@Override
+		public XMLNode fromBytes(byte[] data) throws IOException {
+			return BinaryCodec.decodeNode(data);
+		}
+	};
+
+	private NodeSerializers() {
+		// do not instantiate
+	}
+
+	public static class ElementSerializer implements INodeSerializer<Element> {
+
+		private ElementSerializer() {
+			// use NodeSerializers.ELEMENT
+		}
+
+		@Override
+		public byte[] toBytes(Element node) {
+			return BinaryCodec.encode(node);
+		}
+
+		@Override
+		public Element fromBytes(byte[] data) throws IOException {
+			return BinaryCodec.decodeElement(data);
+		}
+
+		// name and attributes only; the content is not decoded
+		public Element fromBytesHead(byte[] data) throws IOException {
+			return BinaryCodec.decodeHead(data);
+		}
+
+		public String getName(byte[] data) throws IOException {
+			return BinaryCodec.decodeHead(data).getName();
+		}
+	}
+
+	private static class LeafSerializer<T extends XMLNode> implements INodeSerializer<T> {
+
+		private final Class<T> type;
+
+		LeafSerializer(Class<T> type) {
+			this.type = type;
+		}
+
+		@Override
+		public byte[] toBytes(T node) {
+			return BinaryCodec.encode(node);
+		}
+
+		@Override
+		public T fromBytes(byte[] data) throws IOException {
+			XMLNode node = BinaryCodec.decodeNode(data);
+			if (!type.isInstance(node)) {
+				throw new IOException(Messages.getString("BinaryCodec.0"));
+			}
+			return type.cast(node);
+		}
+	}
+}
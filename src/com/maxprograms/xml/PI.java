@@ -18,6 +18,9 @@ public class PI implements XMLNode {
 	private static final long serialVersionUID = -689697302415200547L;
 	private String target;
 	private String data;
+	private transient boolean frozen;
+	// the elements that hold this node
+	private transient Object owners;
 
 	public PI(String target, String data) {
 		this.target = target;
@@ -33,6 +36,10 @@ public class PI implements XMLNode {
 	}
 
 	public void setData(String value) {
+		if (frozen) {
+			throw new UnsupportedOperationException(Messages.getString("XMLNode.0"));
+		}
+		Element.contentChanging(owners);
 		data = value;
 	}
 
@@ -65,7 +72,18 @@ public class PI implements XMLNode {
 
 	@Override
 	public int hashCode() {
-		return toString().hashCode();
+		return 31 * target.hashCode() + data.hashCode();
+	}
+
+	void addOwner(Element e) {
+		owners = Containers.add(owners, e);
 	}
 
+	void removeOwner(Element e) {
+		owners = Containers.remove(owners, e);
+	}
+
+	void freeze() {
+		frozen = true;
+	}
 }
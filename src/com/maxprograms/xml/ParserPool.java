@@ -0,0 +1,101 @@
+/*******************************************************************************
+ * Copyright (c) 2022-2026 Maxprograms. All rights reserved.
+ *
+ * This software is the proprietary property of Maxprograms.
+ * Use, modification, and distribution are subject to the terms of the 
+ * Software License Agreement found in the root of this distribution 
+ *
+ * Unauthorized redistribution or commercial use is strictly prohibited.
+ *******************************************************************************/
+package com.maxprograms.xml;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+
+public class ParserPool {
+
+	public static final int DEFAULT_MAX_IDLE = 16;
+
+	private static final SAXParserFactory factory = SAXParserFactory.newInstance();
+	private static final ParserPool plainPool = new ParserPool(false);
+	private static final ParserPool validatingPool = new ParserPool(true);
+
+	private final boolean validating;
+	private final Queue<XMLReader> idle;
+	private final AtomicInteger idleCount;
+	private volatile int maxIdle;
+
+	private ParserPool(boolean validating) {
+		this.validating = validating;
+		idle = new ConcurrentLinkedQueue<>();
+		idleCount = new AtomicInteger();
+		maxIdle = DEFAULT_MAX_IDLE;
+	}
+
+	public static ParserPool getPool(boolean validating) {
+		return validating ? validatingPool : plainPool;
+	}
+
+	public static XMLReader newParser(boolean validating) throws SAXException, ParserConfigurationException {
+		XMLReader parser;
+		synchronized (factory) {
+			parser = factory.newSAXParser().getXMLReader();
+		}
+		parser.setFeature("http://xml.org/sax/features/namespaces", true);
+		if (validating) {
+			parser.setFeature("http://xml.org/sax/features/validation", true);
+			parser.setFeature("http://apache.org/xml/features/validation/schema", true);
+			parser.setFeature("http://apache.org/xml/features/validation/dynamic", true);
+		}
+		parser.setProperty("http://www.oracle.com/xml/jaxp/properties/totalEntitySizeLimit", 0);
+		return parser;
+	}
+
+	public XMLReader acquire() throws SAXException, ParserConfigurationException {
+		XMLReader parser = idle.poll();
+		if (parser != null) {
+			idleCount.decrementAndGet();
+			return parser;
+		}
+		return newParser(validating);
+	}
+
+	public void release(XMLReader parser) {
+		try {
+			parser.setContentHandler(null);
+			parser.setEntityResolver(null);
+			parser.setErrorHandler(null);
+			parser.setProperty("http://xml.org/sax/properties/lexical-handler", null);
+			parser.setProperty("http://xml.org/sax/properties/declaration-handler", null);
+			parser.setFeature("http://xml.org/sax/features/namespace-prefixes", false);
+		} catch (SAXException e) {
+			// a parser that cannot be reset is not reused
+			return;
+		}
+		if (idleCount.incrementAndGet() <= maxIdle) {
+			idle.offer(parser);
+		} else {
+			idleCount.decrementAndGet();
+		}
+	}
+
+	public void setMaxIdle(int value) {
+		maxIdle = Math.max(0, value);
+		while (idleCount.get() > maxIdle && idle.poll() != null) {
+			idleCount.decrementAndGet();
+		}
+	}
+
+	public void clear() {
+		while (idle.poll() != null) {
+			idleCount.decrementAndGet();
+		}
+	}
+}
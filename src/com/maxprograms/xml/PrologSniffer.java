@@ -0,0 +1,204 @@
+/*******************************************************************************
+ * Copyright (c) 2022-2026 Maxprograms. All rights reserved.
+ *
+ * This software is the proprietary property of Maxprograms.
+ * Use, modification, and distribution are subject to the terms of the 
+ * Software License Agreement found in the root of this distribution 
+ *
+ * Unauthorized redistribution or commercial use is strictly prohibited.
+ *******************************************************************************/
+package com.maxprograms.xml;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.StandardCharsets;
+import java.nio.charset.UnsupportedCharsetException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+public class PrologSniffer {
+
+	public static final int BLOCK_SIZE = 2048;
+
+	private final byte[] head;
+	private Charset bom;
+	private int bomLength;
+	private Charset family;
+	private String declaredEncoding;
+	private boolean doctype;
+	private boolean internalSubset;
+	private boolean attlist;
+
+	public PrologSniffer(byte[] head) {
+		this.head = head;
+		readBOM();
+		String text = new String(head, bomLength, head.length - bomLength, family);
+		readDeclaration(text);
+		readDoctype(text);
+		attlist = text.indexOf("<!ATTLIST") != -1;
+	}
+
+	// reads the first block and rewinds the stream, so the parser can still read it from the start
+	public static PrologSniffer sniff(InputStream stream) throws IOException {
+		if (!stream.markSupported()) {
+			throw new IOException(Messages.getString("PrologSniffer.0"));
+		}
+		stream.mark(BLOCK_SIZE);
+		try {
+			return new PrologSniffer(stream.readNBytes(BLOCK_SIZE));
+		} finally {
+			stream.reset();
+		}
+	}
+
+	public static PrologSniffer sniff(Path path) throws IOException {
+		try (InputStream stream = Files.newInputStream(path)) {
+			return new PrologSniffer(stream.readNBytes(BLOCK_SIZE));
+		}
+	}
+
+	public static byte[] getBOM(Charset charset) {
+		if (StandardCharsets.UTF_8.equals(charset)) {
+			return XMLUtils.UTF8BOM.clone();
+		}
+		if (StandardCharsets.UTF_16BE.equals(charset)) {
+			return new byte[] { -2, -1 };
+		}
+		if (StandardCharsets.UTF_16LE.equals(charset)) {
+			return new byte[] { -1, -2 };
+		}
+		return null;
+	}
+
+	private void readBOM() {
+		family = StandardCharsets.ISO_8859_1;
+		for (Charset charset : new Charset[] { StandardCharsets.UTF_8, StandardCharsets.UTF_16BE,
+				StandardCharsets.UTF_16LE }) {
+			byte[] mark = getBOM(charset);
+			if (head.length >= mark.length && Arrays.equals(head, 0, mark.length, mark, 0, mark.length)) {
+				bom = charset;
+				bomLength = mark.length;
+				if (!StandardCharsets.UTF_8.equals(charset)) {
+					family = charset;
+				}
+				return;
+			}
+		}
+		// UTF-16 without BOM, detected from the first '<'
+		if (head.length >= 2 && head[0] == 0 && head[1] == '<') {
+			family = StandardCharsets.UTF_16BE;
+		} else if (head.length >= 2 && head[0] == '<' && head[1] == 0) {
+			family = StandardCharsets.UTF_16LE;
+		}
+	}
+
+	private void readDeclaration(String text) {
+		if (!text.startsWith("<?xml") || text.length() < 6 || !Character.isWhitespace(text.charAt(5))) {
+			return;
+		}
+		int end = text.indexOf("?>");
+		if (end == -1) {
+			return;
+		}
+		String declaration = text.substring(5, end);
+		int index = declaration.indexOf("encoding");
+		if (index == -1) {
+			return;
+		}
+		int i = skipSpace(declaration, index + 8);
+		if (i >= declaration.length() || declaration.charAt(i) != '=') {
+			return;
+		}
+		i = skipSpace(declaration, i + 1);
+		if (i >= declaration.length()) {
+			return;
+		}
+		char quote = declaration.charAt(i);
+		int close = declaration.indexOf(quote, i + 1);
+		if ((quote == '"' || quote == '\'') && close != -1) {
+			declaredEncoding = declaration.substring(i + 1, close);
+		}
+	}
+
+	private void readDoctype(String text) {
+		int start = text.indexOf("<!DOCTYPE");
+		if (start == -1) {
+			return;
+		}
+		doctype = true;
+		char quote = 0;
+		for (int i = start + 9; i < text.length(); i++) {
+			char c = text.charAt(i);
+			if (quote != 0) {
+				if (c == quote) {
+					quote = 0;
+				}
+			} else if (c == '"' || c == '\'') {
+				quote = c;
+			} else if (c == '[') {
+				internalSubset = true;
+				return;
+			} else if (c == '>') {
+				return;
+			}
+		}
+	}
+
+	private static int skipSpace(String string, int start) {
+		int i = start;
+		while (i < string.length() && Character.isWhitespace(string.charAt(i))) {
+			i++;
+		}
+		return i;
+	}
+
+	public byte[] getHead() {
+		return head;
+	}
+
+	public boolean isEmpty() {
+		return head.length == 0;
+	}
+
+	public Charset getBOM() {
+		return bom;
+	}
+
+	public int getBOMLength() {
+		return bomLength;
+	}
+
+	public String getDeclaredEncoding() {
+		return declaredEncoding;
+	}
+
+	// the BOM wins over the declaration; UTF-8 is the default
+	public Charset getEncoding() {
+		if (bom != null) {
+			return bom;
+		}
+		if (declaredEncoding != null) {
+			try {
+				return Charset.forName(declaredEncoding);
+			} catch (IllegalCharsetNameException | UnsupportedCharsetException e) {
+				// fall back to the encoding detected from the bytes
+			}
+		}
+		return StandardCharsets.ISO_8859_1.equals(family) ? StandardCharsets.UTF_8 : family;
+	}
+
+	public boolean hasDoctype() {
+		return doctype;
+	}
+
+	public boolean hasInternalSubset() {
+		return internalSubset;
+	}
+
+	public boolean hasAttlist() {
+		return attlist;
+	}
+}
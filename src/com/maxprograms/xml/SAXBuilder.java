@@ -9,24 +9,36 @@
  *******************************************************************************/
 package com.maxprograms.xml;
 
+import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
 import java.net.URL;
-import java.nio.charset.Charset;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
 import java.text.MessageFormat;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.Vector;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
 
 import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.parsers.SAXParserFactory;
 
+import org.xml.sax.Attributes;
 import org.xml.sax.EntityResolver;
 import org.xml.sax.ErrorHandler;
 import org.xml.sax.InputSource;
@@ -35,11 +47,19 @@ import org.xml.sax.XMLReader;
 
 public class SAXBuilder {
 
+	// parts of a parallel build are never smaller than this, so small files are not split
+	private static final long MIN_PART_SIZE = 1 << 20;
+
 	private EntityResolver resolver = null;
 	private ErrorHandler errorHandler = null;
 	private boolean validating;
 	private boolean preserveAttributes = false;
 	private IContentHandler contentHandler;
+	private Supplier<IContentHandler> handlerFactory;
+	private boolean reuseParsers = false;
+	private NamePool namePool;
+	private boolean indexing;
+	private boolean deferred;
 
 	public SAXBuilder() {
 		validating = false;
@@ -55,7 +75,7 @@ public class SAXBuilder {
 			MessageFormat mf = new MessageFormat(Messages.getString("SAXBuilder.1"));
 			throw new IOException(mf.format(new String[] { filename }));
 		}
-		return build(f.toURI().toURL());
+		return build(f);
 	}
 
 	public Document build(URI uri) throws SAXException, IOException, ParserConfigurationException {
@@ -67,55 +87,158 @@ public class SAXBuilder {
 			MessageFormat mf = new MessageFormat(Messages.getString("SAXBuilder.1"));
 			throw new IOException(mf.format(new String[] { file.getAbsolutePath() }));
 		}
+		if (canDefer()) {
+			return buildDeferred(file);
+		}
 		return build(file.toURI().toURL());
 	}
 
-	public Document build(ByteArrayInputStream stream) throws SAXException, IOException, ParserConfigurationException {
-		XMLReader parser = SAXParserFactory.newInstance().newSAXParser().getXMLReader();
-		parser.setFeature("http://xml.org/sax/features/namespaces", true);
-		if (validating) {
-			parser.setFeature("http://xml.org/sax/features/validation", true);
-			parser.setFeature("http://apache.org/xml/features/validation/schema", true);
-			parser.setFeature("http://apache.org/xml/features/validation/dynamic", true);
+	// custom handlers expect to see every element, and the deferred parser builds most of them without SAX
+	private boolean canDefer() {
+		return deferred && !validating && contentHandler == null && handlerFactory == null;
+	}
+
+	private Document buildDeferred(File file) throws SAXException, IOException, ParserConfigurationException {
+		CustomContentHandler handler = new CustomContentHandler() {
+
+			@Override
+			public void startElement(String uri, String localName, String qName, Attributes atts)
+					throws SAXException {
+				super.startElement(uri, localName, qName, atts);
+				throw new RootReached();
+			}
+		};
+		if (namePool != null) {
+			handler.setNamePool(namePool);
+		}
+		handler.setIndexing(indexing);
+		if (resolver instanceof Catalog catalog) {
+			handler.setCatalog(catalog);
 		}
-		parser.setProperty("http://www.oracle.com/xml/jaxp/properties/totalEntitySizeLimit", 0);
-		boolean clearHandler = false;
-		if (contentHandler == null) {
-			contentHandler = new CustomContentHandler();
-			clearHandler = true;
+		EntityHandler declarations = new EntityHandler();
+		Document doc = build(file.toURI().toURL(), handler, declarations);
+		if (declarations.hasAttributeDefaults() || handler.hasDefaultAttributes() || hasMarkupEntities(doc)) {
+			// the deferred parser reads elements from the bytes alone: it does not add default attributes
+			// declared in a DTD or RelaxNG grammar, nor build elements from entity values with markup
+			return build(file.toURI().toURL());
 		}
-		parser.setContentHandler(contentHandler);
-		if (resolver == null) {
-			resolver = new DTDResolver();
+		DeferredParser deferredParser = new DeferredParser(file.toPath(), doc.getEncoding(), doc.getEntities(),
+				handler.getNamePool());
+		if (!deferredParser.isSupported()) {
+			return build(file.toURI().toURL());
 		}
-		parser.setEntityResolver(resolver);
-		if (errorHandler != null) {
-			parser.setErrorHandler(errorHandler);
-		} else {
-			parser.setErrorHandler(new CustomErrorHandler());
+		deferredParser.attach(doc);
+		return doc;
+	}
+
+	private static boolean hasMarkupEntities(Document doc) {
+		Map<String, String> entities = doc.getEntities();
+		if (entities != null) {
+			for (String value : entities.values()) {
+				if (value != null && value.indexOf('<') != -1) {
+					return true;
+				}
+			}
 		}
-		parser.setProperty("http://xml.org/sax/properties/lexical-handler", contentHandler);
+		return false;
+	}
 
-		EntityHandler declhandler = new EntityHandler();
-		parser.setProperty("http://xml.org/sax/properties/declaration-handler", declhandler);
+	public Document build(ByteArrayInputStream stream) throws SAXException, IOException, ParserConfigurationException {
+		XMLReader parser = getParser();
+		try {
+			IContentHandler handler = contentHandler != null ? contentHandler : newContentHandler();
+			parser.setContentHandler(handler);
+			parser.setEntityResolver(resolver != null ? resolver : new DTDResolver());
+			if (errorHandler != null) {
+				parser.setErrorHandler(errorHandler);
+			} else {
+				parser.setErrorHandler(new CustomErrorHandler());
+			}
+			parser.setProperty("http://xml.org/sax/properties/lexical-handler", handler);
 
-		parser.parse(new InputSource(stream));
-		Document doc = contentHandler.getDocument();
+			EntityHandler declhandler = new EntityHandler();
+			parser.setProperty("http://xml.org/sax/properties/declaration-handler", declhandler);
 
-		Map<String, String> entities = declhandler.getEntities();
-		if (entities.size() > 0) {
-			doc.setEntities(entities);
+			parser.parse(new InputSource(stream));
+			Document doc = handler.getDocument();
+
+			Map<String, String> entities = declhandler.getEntities();
+			if (entities.size() > 0) {
+				doc.setEntities(entities);
+			}
+			return doc;
+		} finally {
+			releaseParser(parser);
 		}
-		if (clearHandler) {
-			contentHandler = null;
+	}
+
+	private IContentHandler newContentHandler() {
+		return newContentHandler(namePool, indexing);
+	}
+
+	private IContentHandler newContentHandler(NamePool pool, boolean index) {
+		if (handlerFactory != null) {
+			return handlerFactory.get();
 		}
-		return doc;
+		CustomContentHandler handler = new CustomContentHandler();
+		if (pool != null) {
+			handler.setNamePool(pool);
+		}
+		handler.setIndexing(index);
+		return handler;
+	}
+
+	private XMLReader getParser() throws SAXException, ParserConfigurationException {
+		if (reuseParsers) {
+			return ParserPool.getPool(validating).acquire();
+		}
+		return ParserPool.newParser(validating);
+	}
+
+	private void releaseParser(XMLReader parser) {
+		if (reuseParsers) {
+			ParserPool.getPool(validating).release(parser);
+		}
+	}
+
+	public void setReuseParsers(boolean value) {
+		reuseParsers = value;
+	}
+
+	public boolean isReuseParsers() {
+		return reuseParsers;
 	}
 
 	public void setContentHandler(IContentHandler handler) {
 		contentHandler = handler;
 	}
 
+	public void setContentHandlerFactory(Supplier<IContentHandler> factory) {
+		handlerFactory = factory;
+	}
+
+	public void setNamePool(NamePool pool) {
+		namePool = pool;
+	}
+
+	public void setIndexing(boolean value) {
+		indexing = value;
+	}
+
+	public boolean isIndexing() {
+		return indexing;
+	}
+
+	// deferred content is only checked when it is first read, so broken markup there surfaces later
+	// as a MalformedContentException naming the file and byte offset
+	public void setDeferred(boolean value) {
+		deferred = value;
+	}
+
+	public boolean isDeferred() {
+		return deferred;
+	}
+
 	public void setEntityResolver(EntityResolver res) {
 		resolver = res;
 	}
@@ -129,6 +252,39 @@ public class SAXBuilder {
 	}
 
 	public Document build(URL url) throws SAXException, IOException, ParserConfigurationException {
+		return build(url, contentHandler);
+	}
+
+	public Document stream(File file, String elementName, IElementHandler elementHandler)
+			throws SAXException, IOException, ParserConfigurationException {
+		if (!file.exists()) {
+			MessageFormat mf = new MessageFormat(Messages.getString("SAXBuilder.1"));
+			throw new IOException(mf.format(new String[] { file.getAbsolutePath() }));
+		}
+		return stream(file.toURI().toURL(), elementName, elementHandler);
+	}
+
+	public Document stream(URL url, String elementName, IElementHandler elementHandler)
+			throws SAXException, IOException, ParserConfigurationException {
+		CustomContentHandler handler = new CustomContentHandler();
+		if (namePool != null) {
+			handler.setNamePool(namePool);
+		}
+		handler.setIndexing(indexing);
+		if (resolver instanceof Catalog catalog) {
+			handler.setCatalog(catalog);
+		}
+		handler.setElementHandler(elementName, elementHandler);
+		return build(url, handler);
+	}
+
+	private Document build(URL url, IContentHandler customHandler)
+			throws SAXException, IOException, ParserConfigurationException {
+		return build(url, customHandler, new EntityHandler());
+	}
+
+	private Document build(URL url, IContentHandler customHandler, EntityHandler declhandler)
+			throws SAXException, IOException, ParserConfigurationException {
 		if ("file".equals(url.getProtocol()) && resolver instanceof Catalog catalog) {
 			File f = new File(url.toString());
 			String parent = f.getParentFile().getAbsolutePath();
@@ -137,58 +293,214 @@ public class SAXBuilder {
 			}
 			catalog.currentDocumentBase(parent);
 		}
-		XMLReader parser = SAXParserFactory.newInstance().newSAXParser().getXMLReader();
-		parser.setFeature("http://xml.org/sax/features/namespaces", true);
-		if (validating) {
-			parser.setFeature("http://xml.org/sax/features/validation", true);
-			parser.setFeature("http://apache.org/xml/features/validation/schema", true);
-			parser.setFeature("http://apache.org/xml/features/validation/dynamic", true);
-		}
-		parser.setProperty("http://www.oracle.com/xml/jaxp/properties/totalEntitySizeLimit", 0);
-		boolean clearHandler = false;
-		if (contentHandler == null) {
-			contentHandler = new CustomContentHandler();
-			if (resolver instanceof Catalog catalog) {
-				contentHandler.setCatalog(catalog);
-			}
-			clearHandler = true;
+		try (InputStream stream = url.openStream()) {
+			return parse(stream, customHandler, declhandler);
+		}
+	}
+
+	public Document build(Path path) throws SAXException, IOException, ParserConfigurationException {
+		if (!Files.exists(path)) {
+			MessageFormat mf = new MessageFormat(Messages.getString("SAXBuilder.1"));
+			throw new IOException(mf.format(new String[] { path.toAbsolutePath().toString() }));
 		}
-		parser.setContentHandler(contentHandler);
-		if (resolver == null) {
-			resolver = new DTDResolver();
+		if (canDefer()) {
+			return buildDeferred(path.toFile());
 		}
-		parser.setEntityResolver(resolver);
-		if (errorHandler != null) {
-			parser.setErrorHandler(errorHandler);
-		} else {
-			parser.setErrorHandler(new CustomErrorHandler());
+		if (resolver instanceof Catalog catalog) {
+			catalog.currentDocumentBase(path.toAbsolutePath().getParent().toString());
+		}
+		return parse(ByteBufferInputStream.map(path), contentHandler);
+	}
+
+	public Document build(ByteBuffer buffer) throws SAXException, IOException, ParserConfigurationException {
+		return parse(new ByteBufferInputStream(buffer.duplicate()), contentHandler);
+	}
+
+	public Document build(ReadableByteChannel channel) throws SAXException, IOException, ParserConfigurationException {
+		if (channel instanceof FileChannel fileChannel) {
+			return parse(new ByteBufferInputStream(ByteBufferInputStream.map(fileChannel)), contentHandler);
 		}
-		parser.setProperty("http://xml.org/sax/properties/lexical-handler", contentHandler);
-		parser.setFeature("http://xml.org/sax/features/namespaces", true);
-		parser.setFeature("http://xml.org/sax/features/namespace-prefixes", true);
+		return parse(Channels.newInputStream(channel), contentHandler);
+	}
 
-		EntityHandler declhandler = new EntityHandler();
-		parser.setProperty("http://xml.org/sax/properties/declaration-handler", declhandler);
+	private Document parse(InputStream input, IContentHandler customHandler)
+			throws SAXException, IOException, ParserConfigurationException {
+		return parse(input, customHandler, new EntityHandler());
+	}
 
-		parser.parse(new InputSource(url.openStream()));
-		Document doc = contentHandler.getDocument();
-		if (doc != null) {
-			Map<String, String> entities = declhandler.getEntities();
-			if (entities != null && entities.size() > 0) {
-				doc.setEntities(entities);
+	private Document parse(InputStream input, IContentHandler customHandler, EntityHandler declhandler)
+			throws SAXException, IOException, ParserConfigurationException {
+		InputStream stream = input;
+		PrologSniffer prolog = null;
+		if (preserveAttributes) {
+			if (!stream.markSupported()) {
+				stream = new BufferedInputStream(stream);
 			}
-			List<AttlistDecl> attlistDeclarations = declhandler.getAttlistDeclarations();
-			if (attlistDeclarations != null && preserveAttributes && hasCustomAttributes(url, doc.getEncoding())) {
-				Set<String> namespaces = getRootNamespaces(doc.getRootElement());
-				doc.setAttlistDeclarations(filterAttlistDeclarations(attlistDeclarations, namespaces));
+			prolog = PrologSniffer.sniff(stream);
+		}
+		XMLReader parser = getParser();
+		try {
+			IContentHandler handler = customHandler;
+			if (handler == null) {
+				handler = newContentHandler();
+				if (resolver instanceof Catalog catalog) {
+					handler.setCatalog(catalog);
+				}
+			}
+			parser.setContentHandler(handler);
+			parser.setEntityResolver(resolver != null ? resolver : new DTDResolver());
+			if (errorHandler != null) {
+				parser.setErrorHandler(errorHandler);
+			} else {
+				parser.setErrorHandler(new CustomErrorHandler());
+			}
+			parser.setProperty("http://xml.org/sax/properties/lexical-handler", handler);
+			parser.setFeature("http://xml.org/sax/features/namespace-prefixes", true);
+			parser.setProperty("http://xml.org/sax/properties/declaration-handler", declhandler);
+
+			try {
+				parser.parse(new InputSource(stream));
+			} catch (RootReached e) {
+				// deferred build: the root content is read from the file on demand
 			}
+			Document doc = handler.getDocument();
+			if (doc != null) {
+				Map<String, String> entities = declhandler.getEntities();
+				if (entities != null && entities.size() > 0) {
+					doc.setEntities(entities);
+				}
+				List<AttlistDecl> attlistDeclarations = declhandler.getAttlistDeclarations();
+				if (attlistDeclarations != null && prolog != null && prolog.hasAttlist()) {
+					Set<String> namespaces = getRootNamespaces(doc.getRootElement());
+					doc.setAttlistDeclarations(filterAttlistDeclarations(attlistDeclarations, namespaces));
+				}
+			}
+			return doc;
+		} finally {
+			releaseParser(parser);
 		}
-		if (clearHandler) {
-			contentHandler = null;
+	}
+
+	public List<Document> buildAll(Collection<Path> files, Executor executor)
+			throws SAXException, IOException, ParserConfigurationException {
+		if (contentHandler != null && handlerFactory == null) {
+			// a handler holds the state of the document it builds, so concurrent parses need one each
+			throw new IllegalStateException(Messages.getString("SAXBuilder.2"));
+		}
+		List<CompletableFuture<Document>> futures = new ArrayList<>(files.size());
+		for (Path path : files) {
+			futures.add(CompletableFuture.supplyAsync(() -> {
+				try {
+					if (contentHandler != null) {
+						return build(path.toFile().toURI().toURL(), handlerFactory.get());
+					}
+					return build(path.toFile());
+				} catch (SAXException | IOException | ParserConfigurationException e) {
+					throw new CompletionException(e);
+				}
+			}, executor));
+		}
+		return joinAll(futures);
+	}
+
+	// parses the content of the first non empty element with the given name in parts, using the executor;
+	// the parts are read with the prolog and the start tags of their ancestors, so namespaces and entities
+	// resolve as in a sequential build
+	public Document buildParallel(Path path, String container, Executor executor)
+			throws SAXException, IOException, ParserConfigurationException {
+		if (!Files.exists(path)) {
+			MessageFormat mf = new MessageFormat(Messages.getString("SAXBuilder.1"));
+			throw new IOException(mf.format(new String[] { path.toAbsolutePath().toString() }));
+		}
+		if (validating || contentHandler != null) {
+			return build(path);
+		}
+		DeferredParser scanner = new DeferredParser(path, PrologSniffer.sniff(path).getEncoding(), null, null);
+		if (!scanner.isSupported()) {
+			return build(path);
+		}
+		DeferredParser.Split split = scanner.split(container, MIN_PART_SIZE,
+				Runtime.getRuntime().availableProcessors() * 4);
+		if (split == null) {
+			return build(path);
+		}
+		if (resolver instanceof Catalog catalog) {
+			catalog.currentDocumentBase(path.toAbsolutePath().getParent().toString());
+		}
+		// names are shared by all parts
+		NamePool pool = namePool != null ? namePool : new NamePool();
+		List<CompletableFuture<Document>> futures = new ArrayList<>(split.size());
+		for (int i = 0; i < split.size(); i++) {
+			ByteBuffer[] part = split.part(i);
+			futures.add(CompletableFuture.supplyAsync(() -> {
+				try {
+					return parse(new ByteBufferInputStream(part), newPartHandler(pool, false));
+				} catch (SAXException | IOException | ParserConfigurationException e) {
+					throw new CompletionException(e);
+				}
+			}, executor));
+		}
+		Document doc = parse(new ByteBufferInputStream(split.skeleton()), newPartHandler(pool, indexing));
+		List<Document> parts = joinAll(futures);
+
+		int[] steps = split.getPath();
+		Element target = doc.getRootElement();
+		for (int step : steps) {
+			target = target.getChildren().get(step);
+		}
+		List<XMLNode> content = new ArrayList<>();
+		for (Document part : parts) {
+			Element element = part.getRootElement();
+			for (int i = 0; i < steps.length; i++) {
+				element = element.getChildren().get(0);
+			}
+			// detached first, so the target adopts the nodes as their only container
+			List<XMLNode> nodes = new ArrayList<>(element.getContent());
+			element.setContent(null);
+			content.addAll(nodes);
+		}
+		ElementIndex index = doc.getIndex();
+		if (index != null) {
+			doc.dropIndex();
+		}
+		target.setContent(content);
+		if (index != null) {
+			doc.createIndex(index.getIdAttributes());
 		}
 		return doc;
 	}
 
+	private IContentHandler newPartHandler(NamePool pool, boolean index) {
+		IContentHandler handler = newContentHandler(pool, index);
+		if (resolver instanceof Catalog catalog) {
+			handler.setCatalog(catalog);
+		}
+		return handler;
+	}
+
+	private static List<Document> joinAll(List<CompletableFuture<Document>> futures)
+			throws SAXException, IOException, ParserConfigurationException {
+		List<Document> result = new ArrayList<>(futures.size());
+		for (CompletableFuture<Document> future : futures) {
+			try {
+				result.add(future.join());
+			} catch (CompletionException e) {
+				Throwable cause = e.getCause();
+				if (cause instanceof SAXException se) {
+					throw se;
+				}
+				if (cause instanceof IOException ioe) {
+					throw ioe;
+				}
+				if (cause instanceof ParserConfigurationException pce) {
+					throw pce;
+				}
+				throw e;
+			}
+		}
+		return result;
+	}
+
 	private List<AttlistDecl> filterAttlistDeclarations(List<AttlistDecl> declarations, Set<String> namespaces) {
 		List<AttlistDecl> result = new Vector<>();
 		for (AttlistDecl attlist : declarations) {
@@ -224,17 +536,13 @@ public class SAXBuilder {
 		return namespaces;
 	}
 
-	private static boolean hasCustomAttributes(URL url, Charset charset) throws IOException {
-		byte[] array = new byte[2048];
-		try (InputStream source = url.openStream()) {
-			source.read(array, 0, 2048);
-		}
-		String string = new String(array, charset);
-		return string.indexOf("<!ATTLIST") != -1;
-	}
-
 	public void preserveCustomAttributes(boolean value) {
 		preserveAttributes = value;
 	}
 
+	private static class RootReached extends SAXException {
+
+		private static final long serialVersionUID = -5480412437932915806L;
+	}
+
 }
@@ -17,6 +17,9 @@ public class TextNode implements XMLNode {
 
 	private static final long serialVersionUID = 2837146125080492272L;
 	private String text;
+	private transient boolean frozen;
+	// the elements that hold this node
+	private transient Object owners;
 
 	public TextNode(String value) {
 		text = value;
@@ -42,6 +45,10 @@ public class TextNode implements XMLNode {
 	}
 
 	public void setText(String value) {
+		if (frozen) {
+			throw new UnsupportedOperationException(Messages.getString("XMLNode.0"));
+		}
+		Element.contentChanging(owners);
 		text = value;
 	}
 
@@ -58,7 +65,18 @@ public class TextNode implements XMLNode {
 
 	@Override
 	public int hashCode() {
-		return toString().hashCode();
+		return text.hashCode();
+	}
+
+	void addOwner(Element e) {
+		owners = Containers.add(owners, e);
 	}
 
+	void removeOwner(Element e) {
+		owners = Containers.remove(owners, e);
+	}
+
+	void freeze() {
+		frozen = true;
+	}
 }
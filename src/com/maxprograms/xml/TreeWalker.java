@@ -0,0 +1,80 @@
+/*******************************************************************************
+ * Copyright (c) 2022-2026 Maxprograms. All rights reserved.
+ *
+ * This software is the proprietary property of Maxprograms.
+ * Use, modification, and distribution are subject to the terms of the 
+ * Software License Agreement found in the root of this distribution 
+ *
+ * Unauthorized redistribution or commercial use is strictly prohibited.
+ *******************************************************************************/
+package com.maxprograms.xml;
+
+import java.util.Arrays;
+
+public class TreeWalker {
+
+	private TreeWalker() {
+		// do not instantiate
+	}
+
+	public static <X extends Exception> void walk(Element root, ITreeVisitor<X> visitor) throws X {
+		if (!visitor.startElement(root)) {
+			return;
+		}
+		Element[] elements = new Element[16];
+		int[] positions = new int[16];
+		elements[0] = root;
+		int depth = 1;
+		while (depth > 0) {
+			Element current = elements[depth - 1];
+			int position = positions[depth - 1];
+			int size = current.contentSize();
+			if (position >= size) {
+				elements[--depth] = null;
+				visitor.endElement(current);
+				continue;
+			}
+			XMLNode node = current.contentNode(position++);
+			if (node == null) {
+				positions[depth - 1] = position;
+				continue;
+			}
+			if (node.getNodeType() == XMLNode.TEXT_NODE) {
+				// present adjacent text nodes as one, as mergeText() would
+				int end = position;
+				while (end < size && (current.contentNode(end) == null
+						|| current.contentNode(end).getNodeType() == XMLNode.TEXT_NODE)) {
+					end++;
+				}
+				if (end > position) {
+					StringBuilder text = new StringBuilder(((TextNode) node).getText());
+					for (int i = position; i < end; i++) {
+						XMLNode next = current.contentNode(i);
+						if (next != null) {
+							text.append(((TextNode) next).getText());
+						}
+					}
+					node = new TextNode(text.toString());
+					position = end;
+				}
+			}
+			positions[depth - 1] = position;
+			if (node.getNodeType() != XMLNode.ELEMENT_NODE) {
+				visitor.visit(node);
+				continue;
+			}
+			Element child = (Element) node;
+			if (!visitor.startElement(child)) {
+				continue;
+			}
+			if (depth == elements.length) {
+				elements = Arrays.copyOf(elements, depth * 2);
+				positions = Arrays.copyOf(positions, depth * 2);
+			}
+			elements[depth] = child;
+			positions[depth] = 0;
+			depth++;
+		}
+	}
+
+}
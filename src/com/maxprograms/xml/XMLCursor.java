@@ -0,0 +1,294 @@
+/*******************************************************************************
+ * Copyright (c) 2022-2026 Maxprograms. All rights reserved.
+ *
+ * This software is the proprietary property of Maxprograms.
+ * Use, modification, and distribution are subject to the terms of the 
+ * Software License Agreement found in the root of this distribution 
+ *
+ * Unauthorized redistribution or commercial use is strictly prohibited.
+ *******************************************************************************/
+package com.maxprograms.xml;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import javax.xml.stream.Location;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLResolver;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.xml.sax.EntityResolver;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+public class XMLCursor implements AutoCloseable {
+
+	public static final int START_ELEMENT = 1;
+	public static final int END_ELEMENT = 2;
+	public static final int TEXT = 3;
+	public static final int CDATA = 4;
+	public static final int COMMENT = 5;
+	public static final int PROCESSING_INSTRUCTION = 6;
+	public static final int END_DOCUMENT = 7;
+
+	private static final String REPORT_CDATA = "http://java.sun.com/xml/stream/properties/report-cdata-event";
+
+	private InputStream input;
+	private XMLStreamReader reader;
+	private Deque<Element> stack;
+	private StringBuilder text;
+	private boolean pending;
+	private int eventType;
+	private XMLNode node;
+	private int depth;
+
+	public XMLCursor(File file) throws IOException, SAXException {
+		this(file, null);
+	}
+
+	public XMLCursor(File file, EntityResolver resolver) throws IOException, SAXException {
+		this(new BufferedInputStream(new FileInputStream(file)), file.toURI().toString(), resolver);
+	}
+
+	public XMLCursor(InputStream stream, String systemId, EntityResolver resolver) throws SAXException {
+		input = stream;
+		stack = new ArrayDeque<>();
+		text = new StringBuilder();
+		XMLInputFactory factory = XMLInputFactory.newInstance();
+		factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.TRUE);
+		factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.FALSE);
+		if (factory.isPropertySupported(REPORT_CDATA)) {
+			factory.setProperty(REPORT_CDATA, Boolean.TRUE);
+		}
+		if (resolver != null) {
+			factory.setXMLResolver(new Resolver(resolver));
+		}
+		try {
+			reader = systemId != null ? factory.createXMLStreamReader(systemId, stream)
+					: factory.createXMLStreamReader(stream);
+		} catch (XMLStreamException e) {
+			throw toSAXException(e);
+		}
+	}
+
+	public boolean hasNext() {
+		return eventType != END_DOCUMENT;
+	}
+
+	public int next() throws SAXException {
+		if (eventType == END_DOCUMENT) {
+			return eventType;
+		}
+		if (eventType == END_ELEMENT) {
+			stack.pop();
+		}
+		try {
+			while (true) {
+				int type = pending ? reader.getEventType() : reader.next();
+				pending = false;
+				switch (type) {
+					case XMLStreamConstants.CHARACTERS, XMLStreamConstants.SPACE,
+							XMLStreamConstants.ENTITY_REFERENCE:
+						if (!stack.isEmpty()) {
+							text.append(reader.getText());
+						}
+						break;
+					case XMLStreamConstants.START_ELEMENT:
+						if (flushText()) {
+							pending = true;
+							return eventType;
+						}
+						Element e = startElement();
+						depth = stack.size();
+						stack.push(e);
+						return setEvent(START_ELEMENT, e);
+					case XMLStreamConstants.END_ELEMENT:
+						if (flushText()) {
+							pending = true;
+							return eventType;
+						}
+						depth = stack.size() - 1;
+						return setEvent(END_ELEMENT, stack.peek());
+					case XMLStreamConstants.CDATA:
+						if (flushText()) {
+							pending = true;
+							return eventType;
+						}
+						depth = stack.size();
+						return setEvent(CDATA, new CData(reader.getText()));
+					case XMLStreamConstants.COMMENT:
+						if (flushText()) {
+							pending = true;
+							return eventType;
+						}
+						depth = stack.size();
+						return setEvent(COMMENT, new Comment(reader.getText()));
+					case XMLStreamConstants.PROCESSING_INSTRUCTION:
+						if (flushText()) {
+							pending = true;
+							return eventType;
+						}
+						depth = stack.size();
+						String data = reader.getPIData();
+						return setEvent(PROCESSING_INSTRUCTION,
+								new PI(reader.getPITarget(), data != null ? data : ""));
+					case XMLStreamConstants.END_DOCUMENT:
+						depth = 0;
+						return setEvent(END_DOCUMENT, null);
+					default:
+						// DTD, start of document and other events are not reported
+				}
+			}
+		} catch (XMLStreamException e) {
+			throw toSAXException(e);
+		}
+	}
+
+	public int getEventType() {
+		return eventType;
+	}
+
+	public XMLNode getNode() {
+		return node;
+	}
+
+	public Element getElement() {
+		return eventType == START_ELEMENT || eventType == END_ELEMENT ? (Element) node : null;
+	}
+
+	public int getDepth() {
+		return depth;
+	}
+
+	public Element readElement() throws SAXException {
+		if (eventType != START_ELEMENT) {
+			return null;
+		}
+		Element result = (Element) node;
+		Deque<Element> open = new ArrayDeque<>();
+		open.push(result);
+		while (!open.isEmpty()) {
+			int type = next();
+			switch (type) {
+				case START_ELEMENT:
+					open.peek().addContent((Element) node);
+					open.push((Element) node);
+					break;
+				case END_ELEMENT:
+					open.pop();
+					break;
+				case END_DOCUMENT:
+					return result;
+				default:
+					open.peek().addContent(node);
+			}
+		}
+		return result;
+	}
+
+	public void skipElement() throws SAXException {
+		if (eventType != START_ELEMENT) {
+			return;
+		}
+		int level = depth;
+		while (next() != END_DOCUMENT) {
+			if (eventType == END_ELEMENT && depth == level) {
+				return;
+			}
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			reader.close();
+		} catch (XMLStreamException e) {
+			throw new IOException(e.getMessage(), e);
+		} finally {
+			input.close();
+		}
+	}
+
+	private int setEvent(int type, XMLNode value) {
+		eventType = type;
+		node = value;
+		return type;
+	}
+
+	private boolean flushText() {
+		if (text.isEmpty()) {
+			return false;
+		}
+		depth = stack.size();
+		setEvent(TEXT, new TextNode(text.toString()));
+		text.setLength(0);
+		return true;
+	}
+
+	private Element startElement() {
+		Element e = new Element(qualifiedName(reader.getPrefix(), reader.getLocalName()));
+		for (int i = 0; i < reader.getNamespaceCount(); i++) {
+			String prefix = reader.getNamespacePrefix(i);
+			String uri = reader.getNamespaceURI(i);
+			e.setAttribute(prefix == null || prefix.isEmpty() ? "xmlns" : "xmlns:" + prefix, uri != null ? uri : "");
+		}
+		for (int i = 0; i < reader.getAttributeCount(); i++) {
+			e.setAttribute(qualifiedName(reader.getAttributePrefix(i), reader.getAttributeLocalName(i)),
+					reader.getAttributeValue(i));
+		}
+		return e;
+	}
+
+	private static String qualifiedName(String prefix, String localName) {
+		if (prefix == null || prefix.isEmpty()) {
+			return localName;
+		}
+		return prefix + ':' + localName;
+	}
+
+	private static SAXException toSAXException(XMLStreamException e) {
+		Location location = e.getLocation();
+		if (location != null) {
+			return new SAXException("[Fatal Error] " + location.getLineNumber() + ":" + location.getColumnNumber()
+					+ " " + e.getMessage(), e);
+		}
+		return new SAXException(e.getMessage(), e);
+	}
+
+	private static class Resolver implements XMLResolver {
+
+		private EntityResolver resolver;
+
+		Resolver(EntityResolver resolver) {
+			this.resolver = resolver;
+		}
+
+		@Override
+		public Object resolveEntity(String publicID, String systemID, String baseURI, String namespace)
+				throws XMLStreamException {
+			try {
+				InputSource source = resolver.resolveEntity(publicID, systemID);
+				if (source == null) {
+					return null;
+				}
+				if (source.getByteStream() != null) {
+					return source.getByteStream();
+				}
+				if (source.getSystemId() != null) {
+					return URI.create(source.getSystemId()).toURL().openStream();
+				}
+				return null;
+			} catch (SAXException | IOException | IllegalArgumentException e) {
+				throw new XMLStreamException(e.getMessage(), e);
+			}
+		}
+	}
+}
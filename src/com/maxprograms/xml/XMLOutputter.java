@@ -9,110 +9,139 @@
  *******************************************************************************/
 package com.maxprograms.xml;
 
-import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.io.OutputStreamWriter;
-import java.io.Writer;
 import java.lang.System.Logger;
 import java.lang.System.Logger.Level;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
 import java.nio.charset.StandardCharsets;
 import java.util.Hashtable;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
 public class XMLOutputter {
 
 	private Charset defaultEncoding = StandardCharsets.UTF_8;
 	private boolean preserve = false;
 	private Map<String, String> entities = null;
+	private Map<String, String> matcherEntities = null;
+	private EntityMatcher matcher = null;
 	private boolean escape = false;
 	private boolean emptyDoctype = false;
 	private boolean skipLinefeed;
 	private boolean writeBOM;
+	private OutputBuffer buffer;
 
 	private static Logger logger = System.getLogger(XMLOutputter.class.getName());
 
 	public void output(Document sdoc, OutputStream out) throws IOException {
-		try (OutputStreamWriter outputWriter = new OutputStreamWriter(out, sdoc.getEncoding())) {
-			try (Writer writer = new BufferedWriter(outputWriter)) {
-				if (defaultEncoding.equals(StandardCharsets.UTF_16LE)) {
-					writer.write(new String(new byte[] { (byte) 0xFF, (byte) 0xFE }, StandardCharsets.UTF_16LE));
-				}
-				if (defaultEncoding.equals(StandardCharsets.UTF_16BE)) {
-					writer.write(new String(new byte[] { (byte) 0xFE, (byte) 0xFF }, StandardCharsets.UTF_16BE));
-				}
-				if (writeBOM && defaultEncoding.equals(StandardCharsets.UTF_8)) {
-					writer.write(
-							new String(new byte[] { (byte) 0xEF, (byte) 0xBB, (byte) 0xBF }, StandardCharsets.UTF_8));
-				}
-				if (!skipLinefeed) {
-					writer.write("<?xml version=\"1.0\" encoding=\"" + defaultEncoding + "\" ?>\n");
-				} else {
-					writer.write("<?xml version=\"1.0\" encoding=\"" + defaultEncoding + "\"?>");
-				}
-				String doctype = sdoc.getRootElement().getName();
-				String publicId = sdoc.getPublicId();
-				String systemId = sdoc.getSystemId();
-				String internalSubset = sdoc.getInternalSubset();
-
-				List<AttlistDecl> attlistDeclarations = sdoc.getAttlistDeclarations();
-				if (attlistDeclarations != null && !attlistDeclarations.isEmpty()) {
-					if (internalSubset == null) {
-						internalSubset = "";
-					}
-					for (AttlistDecl attlist : attlistDeclarations) {
-						internalSubset += "\n" + attlist.toString();
-					}
+		try (OutputStream stream = out) {
+			output(sdoc, Channels.newChannel(stream));
+		}
+	}
+
+	public void output(Document sdoc, WritableByteChannel channel) throws IOException {
+		if (buffer == null) {
+			buffer = new OutputBuffer();
+		}
+		OutputBuffer writer = buffer;
+		writer.open(channel, sdoc.getEncoding());
+		try {
+			if (PrologSniffer.getBOM(defaultEncoding) != null
+					&& (writeBOM || !defaultEncoding.equals(StandardCharsets.UTF_8))) {
+				writer.write('\uFEFF');
+			}
+			writer.write("<?xml version=\"1.0\" encoding=\"");
+			writer.write(defaultEncoding.name());
+			if (!skipLinefeed) {
+				writer.write("\" ?>\n");
+			} else {
+				writer.write("\"?>");
+			}
+			String doctype = sdoc.getRootElement().getName();
+			String publicId = sdoc.getPublicId();
+			String systemId = sdoc.getSystemId();
+			String internalSubset = sdoc.getInternalSubset();
+
+			List<AttlistDecl> attlistDeclarations = sdoc.getAttlistDeclarations();
+			if (attlistDeclarations != null && !attlistDeclarations.isEmpty()) {
+				StringBuilder subset = new StringBuilder(internalSubset != null ? internalSubset : "");
+				for (AttlistDecl attlist : attlistDeclarations) {
+					subset.append('\n');
+					subset.append(attlist.toString());
 				}
-				if (publicId != null || systemId != null || internalSubset != null) {
-					writer.write("<!DOCTYPE " + doctype + " ");
-					if (publicId != null) {
-						writer.write("PUBLIC \"" + publicId + "\" \"" + systemId + "\"");
-						if (internalSubset != null && !internalSubset.isEmpty()) {
-							writer.write(" [" + internalSubset + "]>\n");
-						} else {
-							writer.write(">\n");
-						}
+				internalSubset = subset.toString();
+			}
+			if (publicId != null || systemId != null || internalSubset != null) {
+				writer.write("<!DOCTYPE ");
+				writer.write(doctype);
+				writer.write(' ');
+				if (publicId != null) {
+					writer.write("PUBLIC \"");
+					writer.write(publicId);
+					writer.write("\" \"");
+					writer.write(String.valueOf(systemId));
+					writer.write('"');
+					if (internalSubset != null && !internalSubset.isEmpty()) {
+						writer.write(" [");
+						writer.write(internalSubset);
+						writer.write("]>\n");
 					} else {
-						if (systemId != null) {
-							writer.write("SYSTEM \"" + systemId + "\" ");
-						}
-						if (internalSubset != null) {
-							writer.write("[\n" + internalSubset + "]");
-						}
 						writer.write(">\n");
 					}
 				} else {
-					if (emptyDoctype) {
-						writer.write("<!DOCTYPE " + doctype + ">");
+					if (systemId != null) {
+						writer.write("SYSTEM \"");
+						writer.write(systemId);
+						writer.write("\" ");
 					}
+					if (internalSubset != null) {
+						writer.write("[\n");
+						writer.write(internalSubset);
+						writer.write(']');
+					}
+					writer.write(">\n");
 				}
-				entities = sdoc.getEntities();
-				if (entities == null) {
-					entities = new Hashtable<>();
-					entities.put("lt", "&#38;#60;");
-					entities.put("gt", "&#62;");
-					entities.put("amp", "&#38;#38;");
+			} else {
+				if (emptyDoctype) {
+					writer.write("<!DOCTYPE ");
+					writer.write(doctype);
+					writer.write('>');
 				}
-				processHeader(writer, sdoc.getContent());
 			}
+			entities = sdoc.getEntities();
+			if (entities == null) {
+				entities = new Hashtable<>();
+				entities.put("lt", "&#38;#60;");
+				entities.put("gt", "&#62;");
+				entities.put("amp", "&#38;#38;");
+			}
+			if (matcher == null || !entities.equals(matcherEntities)) {
+				matcherEntities = new Hashtable<>(entities);
+				matcher = new EntityMatcher(entities);
+			}
+			processHeader(writer, sdoc.getContent());
+		} finally {
+			writer.close();
 		}
 	}
 
-	private void processHeader(Writer output, List<XMLNode> list) throws IOException {
+	private void processHeader(OutputBuffer output, List<XMLNode> list) throws IOException {
 		int length = list.size();
 		for (int i = 0; i < length; i++) {
 			XMLNode n = list.get(i);
 			switch (n.getNodeType()) {
 				case XMLNode.PROCESSING_INSTRUCTION_NODE:
-					PI pi = (PI) n;
-					output.write("<?" + pi.getTarget() + " " + pi.getData() + "?>");
+					writePI(output, (PI) n);
 					if (!preserve) {
-						output.write("\n");
+						output.write('\n');
 					}
 					break;
 				case XMLNode.DOCUMENT_NODE:
@@ -122,22 +151,18 @@ public class XMLOutputter {
 					traverse(output, (Element) n);
 					break;
 				case XMLNode.COMMENT_NODE:
-					Comment c = (Comment) n;
-					if (!preserve) {
-						output.write("\n<!-- " + c.getText() + " -->");
-					} else {
-						output.write("<!-- " + c.getText() + " -->");
-					}
+					writeComment(output, (Comment) n);
 					break;
 				case XMLNode.CDATA_SECTION_NODE:
 					CData cd = (CData) n;
-					output.write("<![CDATA[" + cd.getData() + "]]>");
+					output.write("<![CDATA[");
+					output.write(cd.getData());
+					output.write("]]>");
 					break;
 				case XMLNode.TEXT_NODE:
 					TextNode tn = (TextNode) n;
-					String text = cleanString(tn.getText());
-					if (text != null) {
-						output.write(text);
+					if (tn.getText() != null) {
+						writeText(output, tn.getText(), false, false);
 					}
 					break;
 				default:
@@ -147,54 +172,63 @@ public class XMLOutputter {
 		}
 	}
 
-	private void traverse(Writer output, Element el) throws IOException {
-		String type = el.getName();
-		String space = el.getAttributeValue("xml:space", "default");
-		if (space.equals("preserve") && !preserve) {
-			preserve = true;
-		}
-		output.write("<" + type);
-		List<Attribute> attrs = el.getAttributes();
-		for (int i = 0; i < attrs.size(); i++) {
-			Attribute a = attrs.get(i);
-			output.write(" " + a.toString());
-		}
-		List<XMLNode> list = el.getContent();
-		if (!list.isEmpty()) {
-			output.write(">");
-			for (int i = 0; i < list.size(); i++) {
-				XMLNode n = list.get(i);
+	private void traverse(OutputBuffer output, Element el) throws IOException {
+		TreeWalker.walk(el, new ITreeVisitor<IOException>() {
+
+			@Override
+			public boolean startElement(Element element) throws IOException {
+				String space = element.getAttributeValue("xml:space", "default");
+				if (space.equals("preserve") && !preserve) {
+					preserve = true;
+				}
+				output.write('<');
+				output.write(element.getName());
+				List<Attribute> attrs = element.getAttributes();
+				for (int i = 0; i < attrs.size(); i++) {
+					Attribute a = attrs.get(i);
+					output.write(' ');
+					output.write(a.getName());
+					output.write("=\"");
+					writeAttributeValue(output, a.getValue());
+					output.write('"');
+				}
+				if (element.contentSize() == 0) {
+					if (skipLinefeed) {
+						output.write(" />");
+					} else {
+						output.write("/>");
+					}
+					return false;
+				}
+				output.write('>');
+				return true;
+			}
+
+			@Override
+			public void endElement(Element element) throws IOException {
+				output.write("</");
+				output.write(element.getName());
+				if (!preserve) {
+					output.write(">\n");
+				} else {
+					output.write('>');
+				}
+			}
+
+			@Override
+			public void visit(XMLNode n) throws IOException {
 				switch (n.getNodeType()) {
-					case XMLNode.ELEMENT_NODE:
-						traverse(output, (Element) n);
-						break;
 					case XMLNode.TEXT_NODE:
 						TextNode tn = (TextNode) n;
-						String text = cleanString(tn.getText());
-						if (text == null) {
-							text = "";
-						}
-						if (escape) {
-							text = text.replace("\"", "&quot;");
-							text = text.replace("'", "&apos;");
-						}
-						if (preserve) {
-							output.write(text);
-						} else {
-							output.write(normalize(text));
+						if (tn.getText() != null) {
+							writeText(output, tn.getText(), escape, !preserve);
 						}
 						break;
 					case XMLNode.PROCESSING_INSTRUCTION_NODE:
-						PI pi = (PI) n;
-						output.write("<?" + pi.getTarget() + " " + pi.getData() + "?>");
+						writePI(output, (PI) n);
 						break;
 					case XMLNode.COMMENT_NODE:
-						Comment c = (Comment) n;
-						if (!preserve) {
-							output.write("\n<!-- " + c.getText() + " -->");
-						} else {
-							output.write("<!-- " + c.getText() + " -->");
-						}
+						writeComment(output, (Comment) n);
 						break;
 					case XMLNode.CDATA_SECTION_NODE:
 						output.write(n.toString());
@@ -204,114 +238,52 @@ public class XMLOutputter {
 						logger.log(Level.WARNING, Messages.getString("XMLOutputter.1"));
 				}
 			}
-			if (!preserve) {
-				output.write("</" + type + ">\n");
-			} else {
-				output.write("</" + type + ">");
-			}
-		} else {
-			if (skipLinefeed) {
-				output.write(" />");
-			} else {
-				output.write("/>");
-			}
-		}
+		});
 	}
 
-	private String cleanString(String string) {
-		if (string == null) {
-			return null;
-		}
-		String result = string.replace("&", "&amp;");
-		result = result.replace("<", "&lt;");
-		result = result.replace(">", "&gt;");
-
-		// now replace common text with
-		// the entities declared in the DTD
-
-		Set<String> keys = entities.keySet();
-		Iterator<String> it = keys.iterator();
-		while (it.hasNext()) {
-			String key = it.next();
-			String value = entities.get(key);
-			if (!value.isEmpty() && !key.equals("amp") && !key.equals("lt") && !key.equals("gt")
-					&& !key.equals("quot")) {
-				result = replaceEntities(result, value, "&" + key + ";");
-			}
-		}
-
-		// now check for valid characters
-
-		return XMLUtils.validChars(result);
-
+	private static void writePI(OutputBuffer output, PI pi) throws IOException {
+		output.write("<?");
+		output.write(pi.getTarget());
+		output.write(' ');
+		output.write(pi.getData());
+		output.write("?>");
 	}
 
-	private static String replaceEntities(String string, String token, String entity) {
-		String result = string;
-		int index = result.indexOf(token);
-		while (index != -1) {
-			String before = result.substring(0, index);
-			String after = result.substring(index + token.length());
-			// check if we are not inside an entity
-			int amp = before.lastIndexOf('&');
-			if (amp == -1) {
-				// we are not in an entity
-				result = before + entity + after;
-			} else {
-				boolean inEntity = true;
-				for (int i = amp; i < before.length(); i++) {
-					char c = before.charAt(i);
-					if (Character.isWhitespace(c) || ";.@$*()[]{},/?\\\"\'+=-^".indexOf(c) != -1) {
-						inEntity = false;
-						break;
-					}
-				}
-				if (inEntity) {
-					// check for a colon in "after"
-					int colon = after.indexOf(';');
-					if (colon == -1) {
-						// we are not in an entity
-						result = before + entity + after;
-					} else {
-						// verify is there is something that breaks the entity before
-						for (int i = 0; i < colon; i++) {
-							char c = after.charAt(i);
-							if (Character.isWhitespace(c) || "&.@$*()[]{},/?\\\"\'+=-^".indexOf(c) != -1) {
-								break;
-							}
-						}
-					}
-				} else {
-					// we are not in an entity
-					result = before + entity + after;
-				}
-			}
-			if (index < result.length()) {
-				index = result.indexOf(token, index + 1);
-			}
+	private void writeComment(OutputBuffer output, Comment c) throws IOException {
+		if (!preserve) {
+			output.write('\n');
 		}
-		return result;
+		output.write("<!-- ");
+		output.write(c.getText());
+		output.write(" -->");
 	}
 
-	private static String normalize(String string) {
-		StringBuilder rs = new StringBuilder("");
-		int length = string.length();
+	private static void writeAttributeValue(OutputBuffer output, String value) throws IOException {
+		int length = value.length();
 		for (int i = 0; i < length; i++) {
-			char ch = string.charAt(i);
-			if (!Character.isSpaceChar(ch)) {
-				if (ch != '\n') {
-					rs.append(ch);
-				} else {
-					rs.append(" ");
-				}
-			} else {
-				rs.append(" ");
-				while (i < length - 1 && Character.isSpaceChar(string.charAt(i + 1))) {
-					i++;
-				}
+			char c = value.charAt(i);
+			switch (c) {
+				case '&':
+					output.write("&amp;");
+					break;
+				case '<':
+					output.write("&lt;");
+					break;
+				case '>':
+					output.write("&gt;");
+					break;
+				case '"':
+					output.write("&quot;");
+					break;
+				default:
+					output.write(c);
 			}
 		}
-		return rs.toString();
+	}
+
+	private void writeText(OutputBuffer output, String text, boolean quotes, boolean normalize)
+			throws IOException {
+		output.writeText(text, matcher.isEmpty() ? null : matcher, quotes, normalize);
 	}
 
 	public void setEncoding(Charset charset) {
@@ -348,4 +320,144 @@ public class XMLOutputter {
 		writeBOM = b;
 	}
 
+	private static class OutputBuffer {
+
+		private static final int SIZE = 8192;
+
+		private final CharBuffer chars = CharBuffer.allocate(SIZE);
+		private final ByteBuffer bytes = ByteBuffer.allocate(SIZE * 4);
+		private WritableByteChannel channel;
+		private CharsetEncoder encoder;
+
+		void open(WritableByteChannel target, Charset charset) {
+			channel = target;
+			if (encoder == null || !encoder.charset().equals(charset)) {
+				encoder = charset.newEncoder().onMalformedInput(CodingErrorAction.REPLACE)
+						.onUnmappableCharacter(CodingErrorAction.REPLACE);
+			} else {
+				encoder.reset();
+			}
+			chars.clear();
+			bytes.clear();
+		}
+
+		void write(char c) throws IOException {
+			if (!chars.hasRemaining()) {
+				encode(false);
+			}
+			chars.put(c);
+		}
+
+		void write(String string) throws IOException {
+			int length = string.length();
+			int offset = 0;
+			while (offset < length) {
+				if (!chars.hasRemaining()) {
+					encode(false);
+				}
+				int count = Math.min(chars.remaining(), length - offset);
+				int position = chars.position();
+				string.getChars(offset, offset + count, chars.array(), position);
+				chars.position(position + count);
+				offset += count;
+			}
+		}
+
+		void writeText(String text, EntityMatcher entities, boolean quotes, boolean normalize)
+				throws IOException {
+			// replaces declared entities, escapes markup, filters invalid XML
+			// characters and, if requested, collapses white space in a single pass
+			boolean inSpace = false;
+			int length = text.length();
+			for (int i = 0; i < length; i++) {
+				if (entities != null) {
+					int matched = entities.match(text, i);
+					if (matched > 0) {
+						write(entities.getReference(text, i, matched));
+						i += matched - 1;
+						inSpace = false;
+						continue;
+					}
+				}
+				char c = text.charAt(i);
+				if (c == '&' || c == '<' || c == '>') {
+					write(c == '&' ? "&amp;" : c == '<' ? "&lt;" : "&gt;");
+					inSpace = false;
+					continue;
+				}
+				if (c == '\t' || c == '\n' || c == '\r' || c >= '\u0020' && c <= '\uD7DF'
+						|| c >= '\uE000' && c <= '\uFFFD') {
+					// normal character
+				} else if (c >= '\u007F' && c <= '\u0084' || c >= '\u0086' && c <= '\u009F'
+						|| c >= '\uFDD0' && c <= '\uFDDF') {
+					// control character
+					write("&#x");
+					write(Integer.toHexString(c));
+					write(';');
+					inSpace = false;
+					continue;
+				} else if (!(c >= '\uDC00' && c <= '\uDFFF' || c >= '\uD800' && c <= '\uDBFF')) {
+					// invalid character
+					continue;
+				}
+				if (quotes && (c == '"' || c == '\'')) {
+					write(c == '"' ? "&quot;" : "&apos;");
+					inSpace = false;
+					continue;
+				}
+				if (normalize) {
+					if (Character.isSpaceChar(c)) {
+						if (!inSpace) {
+							write(' ');
+							inSpace = true;
+						}
+						continue;
+					}
+					inSpace = false;
+					if (c == '\n') {
+						c = ' ';
+					}
+				}
+				write(c);
+			}
+		}
+
+		private void encode(boolean endOfInput) throws IOException {
+			chars.flip();
+			while (true) {
+				CoderResult result = encoder.encode(chars, bytes, endOfInput);
+				if (result.isOverflow()) {
+					drain();
+					continue;
+				}
+				if (result.isError()) {
+					result.throwException();
+				}
+				break;
+			}
+			chars.compact();
+		}
+
+		private void drain() throws IOException {
+			bytes.flip();
+			while (bytes.hasRemaining()) {
+				channel.write(bytes);
+			}
+			bytes.clear();
+		}
+
+		void close() throws IOException {
+			try {
+				encode(true);
+				while (encoder.flush(bytes).isOverflow()) {
+					drain();
+				}
+				drain();
+			} finally {
+				chars.clear();
+				bytes.clear();
+				channel = null;
+			}
+		}
+	}
 }
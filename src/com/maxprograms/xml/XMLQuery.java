@@ -0,0 +1,845 @@
+/*******************************************************************************
+ * Copyright (c) 2022-2026 Maxprograms. All rights reserved.
+ *
+ * This software is the proprietary property of Maxprograms.
+ * Use, modification, and distribution are subject to the terms of the 
+ * Software License Agreement found in the root of this distribution 
+ *
+ * Unauthorized redistribution or commercial use is strictly prohibited.
+ *******************************************************************************/
+package com.maxprograms.xml;
+
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import javax.xml.xpath.XPathExpressionException;
+
+public class XMLQuery {
+
+	private static final int CHILD = 0;
+	private static final int DESCENDANT = 1;
+	private static final int DESCENDANT_OR_SELF = 2;
+	private static final int SELF = 3;
+	private static final int PARENT = 4;
+
+	private final String expression;
+	private final boolean absolute;
+	private final Step[] steps;
+	private final boolean distinct;
+
+	private XMLQuery(String expression, boolean absolute, Step[] steps) {
+		this.expression = expression;
+		this.absolute = absolute;
+		this.steps = steps;
+		boolean duplicates = false;
+		for (int i = 1; i < steps.length; i++) {
+			int axis = steps[i].axis;
+			if (axis == DESCENDANT || axis == DESCENDANT_OR_SELF || axis == PARENT) {
+				duplicates = true;
+			}
+		}
+		distinct = duplicates;
+	}
+
+	public static XMLQuery compile(String expression) throws XPathExpressionException {
+		return new Parser(expression).parse();
+	}
+
+	public String getExpression() {
+		return expression;
+	}
+
+	public Stream<Element> select(Document document) {
+		return evaluate(null, document.getRootElement());
+	}
+
+	public Stream<Element> select(Element context) {
+		if (absolute) {
+			Element root = context;
+			while (root.getParent() != null) {
+				root = root.getParent();
+			}
+			return evaluate(null, root);
+		}
+		return evaluate(context, null);
+	}
+
+	public Element selectFirst(Document document) {
+		return select(document).findFirst().orElse(null);
+	}
+
+	public Element selectFirst(Element context) {
+		return select(context).findFirst().orElse(null);
+	}
+
+	// a null context stands for the document node, whose only child is root
+	private Stream<Element> evaluate(Element context, Element root) {
+		Stream<Element> result = Stream.of(context);
+		for (Step step : steps) {
+			result = result.flatMap(node -> step.select(node, root, step.filters.length));
+		}
+		result = result.filter(Objects::nonNull);
+		if (distinct) {
+			Set<Element> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+			result = result.filter(seen::add);
+		}
+		return result;
+	}
+
+	@Override
+	public String toString() {
+		return expression;
+	}
+
+	private static Stream<Element> stream(Iterator<Element> iterator) {
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED), false);
+	}
+
+	private static class Step {
+
+		final int axis;
+		final String test;
+		final Filter[] filters;
+
+		Step(int axis, String test, Filter[] filters) {
+			this.axis = axis;
+			this.test = test;
+			this.filters = filters;
+		}
+
+		boolean isNodeTest() {
+			return test.equals("node()");
+		}
+
+		boolean isPositional() {
+			for (Filter f : filters) {
+				if (f.positional) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		boolean matches(Element e) {
+			if (e == null) {
+				return isNodeTest();
+			}
+			if (test.equals("*") || isNodeTest()) {
+				return true;
+			}
+			String name = e.getName();
+			if (test.endsWith(":*")) {
+				return name.length() > test.length() - 1 && name.startsWith(test.substring(0, test.length() - 1));
+			}
+			return name.equals(test);
+		}
+
+		Stream<Element> axis(Element context, Element root) {
+			switch (axis) {
+				case CHILD:
+					if (context == null) {
+						return root != null ? Stream.of(root) : Stream.empty();
+					}
+					return stream(new ChildIterator(context));
+				case DESCENDANT:
+					if (context == null) {
+						return root != null ? stream(new DescendantIterator(root, true)) : Stream.empty();
+					}
+					return stream(new DescendantIterator(context, false));
+				case DESCENDANT_OR_SELF:
+					if (context == null) {
+						return root != null ? Stream.concat(Stream.of((Element) null), stream(new DescendantIterator(root, true)))
+								: Stream.empty();
+					}
+					return stream(new DescendantIterator(context, true));
+				case SELF:
+					return Stream.of(context);
+				default:
+					if (context == null) {
+						return Stream.empty();
+					}
+					if (context.getParent() != null) {
+						return Stream.of(context.getParent());
+					}
+					return context == root ? Stream.of((Element) null) : Stream.empty();
+			}
+		}
+
+		Stream<Element> select(Element context, Element root, int upTo) {
+			Stream<Element> result = axis(context, root).filter(this::matches);
+			for (int i = 0; i < upTo; i++) {
+				Filter filter = filters[i];
+				if (!filter.positional) {
+					result = result.filter(e -> e != null && filter.expr.test(e, 0, 0));
+					continue;
+				}
+				int size = filter.usesLast ? (int) select(context, root, i).count() : 0;
+				int[] position = new int[1];
+				result = result.filter(e -> e != null && filter.expr.test(e, ++position[0], size));
+			}
+			return result;
+		}
+	}
+
+	private static class Filter {
+
+		final Expr expr;
+		final boolean positional;
+		final boolean usesLast;
+
+		Filter(Expr expr, boolean positional, boolean usesLast) {
+			this.expr = expr;
+			this.positional = positional;
+			this.usesLast = usesLast;
+		}
+	}
+
+	private interface Expr {
+		boolean test(Element e, int position, int size);
+	}
+
+	private interface Value {
+
+		// null when the value does not exist for the element
+		String string(Element e, int position, int size);
+
+		default boolean anyMatch(Element e, int position, int size, Predicate<String> test) {
+			String s = string(e, position, size);
+			return s != null && test.test(s);
+		}
+
+		default boolean isNumeric() {
+			return false;
+		}
+	}
+
+	private static class NumberValue implements Value {
+
+		final double number;
+
+		NumberValue(double number) {
+			this.number = number;
+		}
+
+		@Override
+		public String string(Element e, int position, int size) {
+			return Double.toString(number);
+		}
+
+		@Override
+		public boolean isNumeric() {
+			return true;
+		}
+	}
+
+	private static class ChildValue implements Value {
+
+		final Step step;
+
+		ChildValue(String name) {
+			step = new Step(CHILD, name, new Filter[0]);
+		}
+
+		@Override
+		public String string(Element e, int position, int size) {
+			Element child = first(e);
+			return child != null ? child.getText() : null;
+		}
+
+		@Override
+		public boolean anyMatch(Element e, int position, int size, Predicate<String> test) {
+			ChildIterator it = new ChildIterator(e);
+			while (it.hasNext()) {
+				Element child = it.next();
+				if (step.matches(child) && test.test(child.getText())) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		Element first(Element e) {
+			ChildIterator it = new ChildIterator(e);
+			while (it.hasNext()) {
+				Element child = it.next();
+				if (step.matches(child)) {
+					return child;
+				}
+			}
+			return null;
+		}
+	}
+
+	private static class TextValue implements Value {
+
+		@Override
+		public String string(Element e, int position, int size) {
+			StringBuilder text = new StringBuilder();
+			for (int i = 0; i < e.contentSize(); i++) {
+				if (e.contentNode(i) instanceof TextNode t) {
+					text.append(t.getText());
+				}
+			}
+			return text.toString();
+		}
+
+		@Override
+		public boolean anyMatch(Element e, int position, int size, Predicate<String> test) {
+			// each run of adjacent text nodes is one text() node
+			StringBuilder run = null;
+			for (int i = 0; i <= e.contentSize(); i++) {
+				XMLNode node = i < e.contentSize() ? e.contentNode(i) : null;
+				if (node instanceof TextNode t) {
+					if (run == null) {
+						run = new StringBuilder();
+					}
+					run.append(t.getText());
+				} else if (run != null && (node != null || i == e.contentSize())) {
+					if (test.test(run.toString())) {
+						return true;
+					}
+					run = null;
+				}
+			}
+			return false;
+		}
+	}
+
+	private static class Parser {
+
+		private final String expression;
+		private int pos;
+		private boolean positional;
+		private boolean usesLast;
+
+		Parser(String expression) {
+			this.expression = expression;
+		}
+
+		XMLQuery parse() throws XPathExpressionException {
+			List<Step> steps = new ArrayList<>();
+			boolean absolute = false;
+			skipSpaces();
+			if (lookingAt("//")) {
+				absolute = true;
+				pos += 2;
+				steps.add(new Step(DESCENDANT_OR_SELF, "node()", new Filter[0]));
+				steps.add(parseStep());
+			} else if (lookingAt("/")) {
+				absolute = true;
+				pos++;
+				skipSpaces();
+				if (pos < expression.length()) {
+					steps.add(parseStep());
+				}
+			} else {
+				steps.add(parseStep());
+			}
+			while (true) {
+				skipSpaces();
+				if (lookingAt("//")) {
+					pos += 2;
+					steps.add(new Step(DESCENDANT_OR_SELF, "node()", new Filter[0]));
+				} else if (lookingAt("/")) {
+					pos++;
+				} else {
+					break;
+				}
+				steps.add(parseStep());
+			}
+			skipSpaces();
+			if (pos < expression.length()) {
+				throw syntaxError();
+			}
+			return new XMLQuery(expression, absolute, optimize(steps));
+		}
+
+		// descendant-or-self::node()/child::x is descendant::x when x has no positional filter
+		private static Step[] optimize(List<Step> steps) {
+			List<Step> result = new ArrayList<>();
+			for (int i = 0; i < steps.size(); i++) {
+				Step step = steps.get(i);
+				if (step.axis == DESCENDANT_OR_SELF && step.isNodeTest() && step.filters.length == 0
+						&& i + 1 < steps.size()) {
+					Step next = steps.get(i + 1);
+					if (next.axis == CHILD && !next.isPositional()) {
+						result.add(new Step(DESCENDANT, next.test, next.filters));
+						i++;
+						continue;
+					}
+				}
+				result.add(step);
+			}
+			return result.toArray(new Step[result.size()]);
+		}
+
+		private Step parseStep() throws XPathExpressionException {
+			skipSpaces();
+			if (lookingAt("..")) {
+				pos += 2;
+				return new Step(PARENT, "node()", parseFilters());
+			}
+			if (lookingAt(".")) {
+				pos++;
+				return new Step(SELF, "node()", parseFilters());
+			}
+			int axis = CHILD;
+			int start = pos;
+			String name = readName();
+			if (name != null && lookingAt("::")) {
+				pos += 2;
+				switch (name) {
+					case "child":
+						axis = CHILD;
+						break;
+					case "descendant":
+						axis = DESCENDANT;
+						break;
+					case "descendant-or-self":
+						axis = DESCENDANT_OR_SELF;
+						break;
+					case "self":
+						axis = SELF;
+						break;
+					case "parent":
+						axis = PARENT;
+						break;
+					default:
+						MessageFormat mf = new MessageFormat(Messages.getString("XMLQuery.2"));
+						throw new XPathExpressionException(mf.format(new String[] { name, expression }));
+				}
+				start = pos;
+				name = readName();
+			}
+			String test;
+			if (name == null) {
+				pos = start;
+				if (!lookingAt("*")) {
+					throw syntaxError();
+				}
+				pos++;
+				test = "*";
+			} else if (lookingAt("*") && name.endsWith(":")) {
+				pos++;
+				test = name + "*";
+			} else if (name.equals("node") && lookingAt("()")) {
+				pos += 2;
+				test = "node()";
+			} else {
+				test = name;
+			}
+			return new Step(axis, test, parseFilters());
+		}
+
+		private Filter[] parseFilters() throws XPathExpressionException {
+			List<Filter> filters = new ArrayList<>();
+			skipSpaces();
+			while (lookingAt("[")) {
+				pos++;
+				positional = false;
+				usesLast = false;
+				Expr expr = parseOr();
+				skipSpaces();
+				expect("]");
+				filters.add(new Filter(expr, positional, usesLast));
+				skipSpaces();
+			}
+			return filters.toArray(new Filter[filters.size()]);
+		}
+
+		private Expr parseOr() throws XPathExpressionException {
+			Expr left = parseAnd();
+			while (keyword("or")) {
+				Expr a = left;
+				Expr b = parseAnd();
+				left = (e, position, size) -> a.test(e, position, size) || b.test(e, position, size);
+			}
+			return left;
+		}
+
+		private Expr parseAnd() throws XPathExpressionException {
+			Expr left = parseUnary();
+			while (keyword("and")) {
+				Expr a = left;
+				Expr b = parseUnary();
+				left = (e, position, size) -> a.test(e, position, size) && b.test(e, position, size);
+			}
+			return left;
+		}
+
+		private Expr parseUnary() throws XPathExpressionException {
+			skipSpaces();
+			if (lookingAt("(")) {
+				pos++;
+				Expr expr = parseOr();
+				skipSpaces();
+				expect(")");
+				return expr;
+			}
+			int start = pos;
+			String name = readName();
+			if (name != null) {
+				skipSpaces();
+				if (lookingAt("(")) {
+					switch (name) {
+						case "not":
+							pos++;
+							Expr expr = parseOr();
+							skipSpaces();
+							expect(")");
+							return (e, position, size) -> !expr.test(e, position, size);
+						case "contains":
+						case "starts-with":
+							pos++;
+							Value a = parseValue();
+							skipSpaces();
+							expect(",");
+							Value b = parseValue();
+							skipSpaces();
+							expect(")");
+							if (name.equals("contains")) {
+								return (e, position, size) -> a.anyMatch(e, position, size,
+										x -> b.anyMatch(e, position, size, x::contains));
+							}
+							return (e, position, size) -> a.anyMatch(e, position, size,
+									x -> b.anyMatch(e, position, size, x::startsWith));
+						default:
+							break;
+					}
+				}
+			}
+			pos = start;
+			Value left = parseValue();
+			skipSpaces();
+			String op = readOperator();
+			if (op == null) {
+				return asBoolean(left);
+			}
+			Value right = parseValue();
+			boolean numeric = left.isNumeric() || right.isNumeric() || !(op.equals("=") || op.equals("!="));
+			return (e, position, size) -> left.anyMatch(e, position, size,
+					x -> right.anyMatch(e, position, size, y -> compare(x, op, y, numeric)));
+		}
+
+		private Expr asBoolean(Value value) {
+			if (value instanceof NumberValue n) {
+				positional = true;
+				return (e, position, size) -> position == n.number;
+			}
+			if (value instanceof ChildValue c) {
+				return (e, position, size) -> c.first(e) != null;
+			}
+			if (value instanceof PositionValue p) {
+				// [last()] selects the last node, [position()] every node
+				return p.last ? (e, position, size) -> position == size : (e, position, size) -> true;
+			}
+			return (e, position, size) -> {
+				String s = value.string(e, position, size);
+				return s != null && (!s.isEmpty() || value instanceof AttributeValue);
+			};
+		}
+
+		private static boolean compare(String x, String op, String y, boolean numeric) {
+			if (!numeric) {
+				return op.equals("=") == x.equals(y);
+			}
+			double a = toNumber(x);
+			double b = toNumber(y);
+			switch (op) {
+				case "=":
+					return a == b;
+				case "!=":
+					return a != b;
+				case "<":
+					return a < b;
+				case "<=":
+					return a <= b;
+				case ">":
+					return a > b;
+				default:
+					return a >= b;
+			}
+		}
+
+		private static double toNumber(String s) {
+			try {
+				return Double.parseDouble(s.strip());
+			} catch (NumberFormatException e) {
+				return Double.NaN;
+			}
+		}
+
+		private Value parseValue() throws XPathExpressionException {
+			skipSpaces();
+			if (pos >= expression.length()) {
+				throw syntaxError();
+			}
+			char c = expression.charAt(pos);
+			if (c == '@') {
+				pos++;
+				String name = readName();
+				if (name == null) {
+					throw syntaxError();
+				}
+				return new AttributeValue(name);
+			}
+			if (c == '\'' || c == '"') {
+				int end = expression.indexOf(c, pos + 1);
+				if (end == -1) {
+					throw syntaxError();
+				}
+				String literal = expression.substring(pos + 1, end);
+				pos = end + 1;
+				return (e, position, size) -> literal;
+			}
+			if (Character.isDigit(c) || (c == '-' || c == '.') && pos + 1 < expression.length()
+					&& Character.isDigit(expression.charAt(pos + 1))) {
+				int start = pos++;
+				while (pos < expression.length()
+						&& (Character.isDigit(expression.charAt(pos)) || expression.charAt(pos) == '.')) {
+					pos++;
+				}
+				try {
+					return new NumberValue(Double.parseDouble(expression.substring(start, pos)));
+				} catch (NumberFormatException e) {
+					pos = start;
+					throw syntaxError();
+				}
+			}
+			if (c == '.') {
+				pos++;
+				return (e, position, size) -> e.getText();
+			}
+			String name = readName();
+			if (name == null) {
+				if (c == '*') {
+					pos++;
+					return new ChildValue("*");
+				}
+				throw syntaxError();
+			}
+			if (lookingAt("*") && name.endsWith(":")) {
+				pos++;
+				return new ChildValue(name + "*");
+			}
+			if (!lookingAt("(")) {
+				return new ChildValue(name);
+			}
+			pos++;
+			skipSpaces();
+			expect(")");
+			switch (name) {
+				case "position":
+					positional = true;
+					return new PositionValue(false);
+				case "last":
+					positional = true;
+					usesLast = true;
+					return new PositionValue(true);
+				case "text":
+					return new TextValue();
+				case "name":
+					return (e, position, size) -> e.getName();
+				case "local-name":
+					return (e, position, size) -> e.getLocalName();
+				default:
+					MessageFormat mf = new MessageFormat(Messages.getString("XMLQuery.1"));
+					throw new XPathExpressionException(mf.format(new String[] { name, expression }));
+			}
+		}
+
+		private String readOperator() {
+			for (String op : new String[] { "!=", "<=", ">=", "=", "<", ">" }) {
+				if (lookingAt(op)) {
+					pos += op.length();
+					return op;
+				}
+			}
+			return null;
+		}
+
+		private String readName() {
+			int start = pos;
+			while (pos < expression.length()) {
+				char c = expression.charAt(pos);
+				if (Character.isLetter(c) || c == '_' || (pos > start && (Character.isDigit(c) || c == '-' || c == '.'))) {
+					pos++;
+				} else if (c == ':' && pos > start && !lookingAt("::")) {
+					pos++;
+				} else {
+					break;
+				}
+			}
+			return pos > start ? expression.substring(start, pos) : null;
+		}
+
+		private boolean keyword(String word) {
+			skipSpaces();
+			int end = pos + word.length();
+			if (lookingAt(word) && (end == expression.length() || !Character.isLetterOrDigit(expression.charAt(end)))) {
+				pos = end;
+				return true;
+			}
+			return false;
+		}
+
+		private boolean lookingAt(String s) {
+			return expression.startsWith(s, pos);
+		}
+
+		private void expect(String s) throws XPathExpressionException {
+			if (!lookingAt(s)) {
+				throw syntaxError();
+			}
+			pos += s.length();
+		}
+
+		private void skipSpaces() {
+			while (pos < expression.length() && Character.isWhitespace(expression.charAt(pos))) {
+				pos++;
+			}
+		}
+
+		private XPathExpressionException syntaxError() {
+			MessageFormat mf = new MessageFormat(Messages.getString("XMLQuery.0"));
+			return new XPathExpressionException(mf.format(new String[] { expression, String.valueOf(pos + 1) }));
+		}
+	}
+
+	private static class AttributeValue implements Value {
+
+		final String name;
+
+		AttributeValue(String name) {
+			this.name = name;
+		}
+
+		@Override
+		public String string(Element e, int position, int size) {
+			Attribute a = e.getAttribute(name);
+			return a != null ? a.getValue() : null;
+		}
+	}
+
+	private static class PositionValue implements Value {
+
+		final boolean last;
+
+		PositionValue(boolean last) {
+			this.last = last;
+		}
+
+		@Override
+		public String string(Element e, int position, int size) {
+			return Integer.toString(last ? size : position);
+		}
+
+		@Override
+		public boolean isNumeric() {
+			return true;
+		}
+	}
+
+	private static class ChildIterator implements Iterator<Element> {
+
+		private final Element parent;
+		private int position;
+		private Element next;
+
+		ChildIterator(Element parent) {
+			this.parent = parent;
+			next = advance();
+		}
+
+		private Element advance() {
+			while (position < parent.contentSize()) {
+				if (parent.contentNode(position++) instanceof Element child) {
+					return child;
+				}
+			}
+			return null;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return next != null;
+		}
+
+		@Override
+		public Element next() {
+			if (next == null) {
+				throw new NoSuchElementException();
+			}
+			Element result = next;
+			next = advance();
+			return result;
+		}
+	}
+
+	private static class DescendantIterator implements Iterator<Element> {
+
+		private Element[] elements;
+		private int[] positions;
+		private int depth;
+		private Element next;
+
+		DescendantIterator(Element start, boolean includeSelf) {
+			elements = new Element[16];
+			positions = new int[16];
+			elements[0] = start;
+			depth = 1;
+			next = includeSelf ? start : advance();
+		}
+
+		private Element advance() {
+			while (depth > 0) {
+				Element current = elements[depth - 1];
+				int position = positions[depth - 1];
+				if (position >= current.contentSize()) {
+					elements[--depth] = null;
+					continue;
+				}
+				positions[depth - 1] = position + 1;
+				if (current.contentNode(position) instanceof Element child) {
+					if (depth == elements.length) {
+						elements = Arrays.copyOf(elements, depth * 2);
+						positions = Arrays.copyOf(positions, depth * 2);
+					}
+					elements[depth] = child;
+					positions[depth] = 0;
+					depth++;
+					return child;
+				}
+			}
+			return null;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return next != null;
+		}
+
+		@Override
+		public Element next() {
+			if (next == null) {
+				throw new NoSuchElementException();
+			}
+			Element result = next;
+			next = advance();
+			return result;
+		}
+	}
+}
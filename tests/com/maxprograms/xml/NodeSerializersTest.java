@@ -0,0 +1,157 @@
+/*******************************************************************************
+ * Copyright (c) 2022-2026 Maxprograms. All rights reserved.
+ *
+ * This software is the proprietary property of Maxprograms.
+ * Use, modification, and distribution are subject to the terms of the 
+ * Software License Agreement found in the root of this distribution 
+ *
+ * Unauthorized redistribution or commercial use is strictly prohibited.
+ *******************************************************************************/
+package com.maxprograms.xml;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Vector;
+
+import org.junit.jupiter.api.Test;
+
+public class NodeSerializersTest {
+
+	// outside the Basic Multilingual Plane, stored as surrogate pairs
+	private static final String EMOJI = "😀";
+	private static final String MUSIC = "𝄞";
+
+	private static Element sample() {
+		Element root = new Element("tu:body");
+		root.setAttribute("xmlns:tu", "urn:example:tu");
+		root.setAttribute("xmlns", "urn:example:default");
+		root.setAttribute("xml:lang", "en");
+		root.setAttribute("note", "clef " + MUSIC);
+		Element seg = new Element("tu:seg");
+		seg.setAttribute("id", "1");
+		seg.addContent("smile " + EMOJI + " & <done>");
+		root.addContent(seg);
+		root.addContent(new Comment("comment " + EMOJI));
+		root.addContent(new PI("target", "data " + MUSIC));
+		root.addContent(new CData("<raw> " + EMOJI));
+		Element empty = new Element("empty");
+		root.addContent(empty);
+		return root;
+	}
+
+	@Test
+	public void elementRoundTrip() throws IOException {
+		Element root = sample();
+		Element copy = NodeSerializers.ELEMENT.fromBytes(NodeSerializers.ELEMENT.toBytes(root));
+		assertEquals(root, copy);
+		assertEquals("tu:body", copy.getName());
+		assertEquals("tu", copy.getPrefix());
+		assertEquals("body", copy.getLocalName());
+		assertEquals("urn:example:tu", copy.getAttributeValue("xmlns:tu"));
+		assertEquals("urn:example:default", copy.getAttributeValue("xmlns"));
+		assertEquals("clef " + MUSIC, copy.getAttributeValue("note"));
+		Element seg = copy.getChild("tu:seg");
+		assertEquals("smile " + EMOJI + " & <done>", seg.getText());
+		assertEquals(root.getContent().size(), copy.getContent().size());
+	}
+
+	@Test
+	public void documentRoundTrip() throws IOException {
+		Document doc = new Document(new Vector<>(List.of(new PI("xml-stylesheet", "href=\"a.xsl\""),
+				new Comment("prolog " + EMOJI), sample())));
+		Document copy = NodeSerializers.DOCUMENT.fromBytes(NodeSerializers.DOCUMENT.toBytes(doc));
+		assertEquals(doc, copy);
+		assertEquals(sample(), copy.getRootElement());
+	}
+
+	@Test
+	public void textRoundTrip() throws IOException {
+		TextNode text = new TextNode("text " + EMOJI + MUSIC + " é中");
+		assertEquals(text.getText(), NodeSerializers.TEXT.fromBytes(NodeSerializers.TEXT.toBytes(text)).getText());
+	}
+
+	@Test
+	public void commentRoundTrip() throws IOException {
+		Comment comment = new Comment(" comment " + EMOJI + " ");
+		assertEquals(comment, NodeSerializers.COMMENT.fromBytes(NodeSerializers.COMMENT.toBytes(comment)));
+	}
+
+	@Test
+	public void piRoundTrip() throws IOException {
+		PI pi = new PI("target", "data " + MUSIC);
+		assertEquals(pi, NodeSerializers.PI.fromBytes(NodeSerializers.PI.toBytes(pi)));
+	}
+
+	@Test
+	public void cdataRoundTrip() throws IOException {
+		CData cdata = new CData("<raw> & " + EMOJI);
+		assertEquals(cdata, NodeSerializers.CDATA.fromBytes(NodeSerializers.CDATA.toBytes(cdata)));
+	}
+
+	@Test
+	public void anyNodeRoundTrip() throws IOException {
+		List<XMLNode> nodes = List.of(sample(), new TextNode(EMOJI), new Comment(MUSIC), new PI("t", EMOJI),
+				new CData(MUSIC));
+		for (XMLNode node : nodes) {
+			XMLNode copy = NodeSerializers.NODE.fromBytes(NodeSerializers.NODE.toBytes(node));
+			assertEquals(node.getNodeType(), copy.getNodeType());
+			assertEquals(node.toString(), copy.toString());
+		}
+	}
+
+	@Test
+	public void headOnly() throws IOException {
+		Element root = sample();
+		byte[] data = NodeSerializers.ELEMENT.toBytes(root);
+		Element head = NodeSerializers.ELEMENT.fromBytesHead(data);
+		assertEquals("tu:body", head.getName());
+		assertEquals(root.getAttributes(), head.getAttributes());
+		assertEquals("clef " + MUSIC, head.getAttributeValue("note"));
+		assertTrue(head.getContent().isEmpty());
+		assertEquals("tu:body", NodeSerializers.ELEMENT.getName(data));
+		assertEquals(head, BinaryCodec.decodeHead(data));
+	}
+
+	@Test
+	public void streamRoundTrip() throws IOException {
+		Element root = sample();
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		NodeSerializers.ELEMENT.serialize(new DataOutputStream(bytes), root);
+		byte[] record = bytes.toByteArray();
+		assertEquals(root, NodeSerializers.ELEMENT.deserialize(input(record), record.length));
+		assertEquals(root, NodeSerializers.ELEMENT.deserialize(input(record), -1));
+	}
+
+	@Test
+	public void lengthBeyondAvailable() throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		NodeSerializers.TEXT.serialize(new DataOutputStream(bytes), new TextNode(EMOJI));
+		byte[] record = bytes.toByteArray();
+		assertThrows(IOException.class, () -> NodeSerializers.TEXT.deserialize(input(record), record.length - 1));
+
+		ByteArrayOutputStream negative = new ByteArrayOutputStream();
+		new DataOutputStream(negative).writeInt(-1);
+		assertThrows(IOException.class, () -> NodeSerializers.TEXT.deserialize(input(negative.toByteArray()), -1));
+	}
+
+	@Test
+	public void leafTypeMismatch() throws IOException {
+		byte[] comment = NodeSerializers.COMMENT.toBytes(new Comment("comment"));
+		assertThrows(IOException.class, () -> NodeSerializers.TEXT.fromBytes(comment));
+		assertInstanceOf(Comment.class, NodeSerializers.NODE.fromBytes(comment));
+		assertThrows(IOException.class, () -> NodeSerializers.ELEMENT.fromBytes(comment));
+	}
+
+	private static DataInputStream input(byte[] data) {
+		return new DataInputStream(new ByteArrayInputStream(data));
+	}
+}